@@ -1,11 +1,9 @@
 package org.intermine.bio.dataconversion;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.Reader;
 import java.io.IOException;
 import java.io.InputStream;
@@ -18,18 +16,13 @@ import java.util.LinkedHashMap;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Properties;
 import static java.util.Map.entry;
     
 import org.apache.log4j.Logger;
 
 import org.biojava.nbio.core.exceptions.ParserException;
-import org.biojava.nbio.core.sequence.DNASequence;
-import org.biojava.nbio.core.sequence.ProteinSequence;
-import org.biojava.nbio.core.sequence.template.AbstractSequence;
-import org.biojava.nbio.genome.parsers.gff.FeatureI;
-import org.biojava.nbio.genome.parsers.gff.FeatureList;
-import org.biojava.nbio.genome.parsers.gff.GFF3Reader;
 import org.biojava.nbio.genome.parsers.gff.Location;
 
 import org.intermine.dataconversion.FileConverter;
@@ -41,7 +34,6 @@ import org.intermine.xml.full.Item;
 
 import org.ncgr.datastore.Readme;
 import org.ncgr.datastore.validation.AnnotationCollectionValidator;
-import org.ncgr.zip.GZIPFastaReader;
 import org.ncgr.zip.GZIPBufferedReader;
 
 /**
@@ -61,8 +53,6 @@ import org.ncgr.zip.GZIPBufferedReader;
 public class AnnotationFileConverter extends DatastoreFileConverter {
 	
     private static final Logger LOG = Logger.getLogger(AnnotationFileConverter.class);
-    private static final String TEMPGENEFILE = "/tmp/gene_models_main.gff3";
-    private static final String TEMPIPRSCANFILE = "/tmp/iprscan.gff3";
 
     // GFF sourced
     Map<String,Item> chromosomes = new HashMap<>();
@@ -97,6 +87,22 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
     // validate the collection first by storing a flag
     boolean collectionValidated = false;
 
+    // flushGeneModels=true stores each gene model as soon as its GFF3 subtree is closed
+    boolean flushGeneModels = false;
+    File geneModelsGFF3File;                               // read in close() when flushing gene models
+    List<File> iprscanGFF3Files = new ArrayList<>();       // read in close() after the gene models when flushing
+    List<GeneModel> openGeneModels = new ArrayList<>();    // GFF3 subtrees that may still have children to come
+    Map<String,GeneModel> openGeneModelIds = new HashMap<>();
+    Map<String,String> storedProteins = new HashMap<>();   // Protein Item identifiers by primaryIdentifier, for IPRScan
+
+    // per-gene-model join state held until its gene model is stored when flushing gene models
+    Map<String,FastaJoin> proteinFastaJoins = new HashMap<>();
+    Map<String,FastaJoin> cdsFastaJoins = new HashMap<>();
+    Map<String,FastaJoin> mrnaFastaJoins = new HashMap<>();
+    Map<String,List<GFAJoin>> geneGFAJoins = new HashMap<>();
+    Map<String,List<GFAJoin>> proteinGFAJoins = new HashMap<>();
+    Map<String,List<Item>> genePathwayJoins = new HashMap<>();
+
     // map GFF types to InterMine classes; be sure to include extras in the additions file!
     Map<String,String> featureClasses = Map.ofEntries(entry("gene", "Gene"),
                                                       entry("mRNA", "MRNA"),
@@ -125,6 +131,52 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
                                                       entry("region", "Region"),
                                                       entry("repeat_region", "RepeatRegion"));
 
+    /**
+     * The primary identifiers of the features in one top-level GFF3 feature's subtree, with the furthest end of any of them.
+     */
+    static class GeneModel {
+        String seqname;
+        int end;
+        Set<String> ids = new LinkedHashSet<>();
+
+        GeneModel(String seqname, int end) {
+            this.seqname = seqname;
+            this.end = end;
+        }
+    }
+
+    /**
+     * The FASTA-sourced attributes of a protein, CDS or mRNA, held until its gene model is stored.
+     */
+    static class FastaJoin {
+        String sequence; // Sequence Item identifier
+        int length;
+        String md5checksum;
+        String symbol;
+        boolean primary;
+
+        FastaJoin(Item sequence, int length, String md5checksum, String symbol, boolean primary) {
+            this.sequence = sequence.getIdentifier();
+            this.length = length;
+            this.md5checksum = md5checksum;
+            this.symbol = symbol;
+            this.primary = primary;
+        }
+    }
+
+    /**
+     * A GFA row for a gene or protein, held until its gene model is stored.
+     */
+    static class GFAJoin {
+        String geneFamilyAssignment; // GeneFamilyAssignment Item identifier
+        Item geneFamily;
+
+        GFAJoin(Item geneFamilyAssignment, Item geneFamily) {
+            this.geneFamilyAssignment = geneFamilyAssignment.getIdentifier();
+            this.geneFamily = geneFamily;
+        }
+    }
+
     /**
      * Create a new AnnotationFileConverter
      * @param writer the ItemWriter to write out new items
@@ -134,6 +186,16 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
         super(writer, model);
     }
 
+    /**
+     * Set flushGeneModels=true in project.xml to store each gene model, and release its map entries, as soon as its GFF3 subtree closes.
+     * The FASTA, GFA and pathway files are then reduced to compact join state as they're processed, and the gene_models_main GFF3 and
+     * the IPRScan GFF3 are read in close(), in that order, so the file order doesn't matter. The gene_models_main GFF3 must be sorted by
+     * seqname and start, with each feature lying within the span of its top-level feature.
+     */
+    public void setFlushGeneModels(String flag) {
+        flushGeneModels = flag.equals("true");
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -152,8 +214,13 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
             setStrain();
             processGenomeReadme(getCurrentFile());
         } else if (getCurrentFile().getName().endsWith(".gene_models_main.gff3.gz")) {
-            System.out.println("## Processing "+getCurrentFile().getName());
-            processGeneModelsMainGFF3File();
+            if (flushGeneModels) {
+                System.out.println("## Deferring "+getCurrentFile().getName()+" to close()");
+                geneModelsGFF3File = getCurrentFile();
+            } else {
+                System.out.println("## Processing "+getCurrentFile().getName());
+                processGeneModelsMainGFF3File(getCurrentFile());
+            }
             gff3FileExists = true;
         } else if (getCurrentFile().getName().endsWith(".gfa.tsv.gz")) {
             System.out.println("## Processing "+getCurrentFile().getName());
@@ -175,8 +242,13 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
             System.out.println("## Processing "+getCurrentFile().getName());
             processPathwayFile();
         } else if (getCurrentFile().getName().endsWith(".iprscan.gff3.gz")) {
-            System.out.println("## Processing "+getCurrentFile().getName());
-            processIPRScanGFF3();
+            if (flushGeneModels) {
+                System.out.println("## Deferring "+getCurrentFile().getName()+" to close()");
+                iprscanGFF3Files.add(getCurrentFile());
+            } else {
+                System.out.println("## Processing "+getCurrentFile().getName());
+                processIPRScanGFF3(getCurrentFile());
+            }
         } else if (getCurrentFile().getName().endsWith(".gz")) {
             System.out.println(" x skipping "+getCurrentFile().getName());
         }
@@ -210,6 +282,20 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
         if (filesMissing) {
             throw new RuntimeException("Missing required annotation file(s). Aborting.");
         }
+        if (flushGeneModels) {
+            try {
+                // store the gene models as they complete, then hold whatever's left in the join state for the joins below
+                System.out.println("## Processing "+geneModelsGFF3File.getName());
+                processGeneModelsMainGFF3File(geneModelsGFF3File);
+                holdUnjoinedItems();
+                for (File iprscanGFF3File : iprscanGFF3Files) {
+                    System.out.println("## Processing "+iprscanGFF3File.getName());
+                    processIPRScanGFF3(iprscanGFF3File);
+                }
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
         // set references and collections for objects loaded from FASTAs based on matching identifiers
         for (String primaryIdentifier : cdses.keySet()) {
             Item cds = cdses.get(primaryIdentifier);
@@ -273,19 +359,20 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
     }
 
     /**
-     * Process a protein FASTA faa file.
+     * Process a protein FASTA faa file, one record at a time.
      */
     void processProteinFasta() throws IOException {
-        LinkedHashMap<String,ProteinSequence> sequenceMap = GZIPFastaReader.readFastaProteinSequence(getCurrentFile());
-        for (ProteinSequence bioJavaSequence : sequenceMap.values()) {
-            String residues = bioJavaSequence.getSequenceAsString();
-            String md5checksum = Util.getMd5checksum(residues);
+        FastaRecordReader fastaReader = new FastaRecordReader(GZIPBufferedReader.getReader(getCurrentFile()));
+        FastaRecord fastaRecord = null;
+        while ((fastaRecord=fastaReader.next())!=null) {
+            String residues = fastaRecord.getResidues();
+            String md5checksum = fastaRecord.getMd5checksum();
             Item sequence = createItem("Sequence");
             sequence.setAttribute("residues", residues);
             sequence.setAttribute("length", String.valueOf(residues.length()));
             sequence.setAttribute("md5checksum", md5checksum);
-            sequences.add(sequence);
-            String identifier = getFastaIdentifier(bioJavaSequence);
+            storeOrHold(sequence, sequences);
+            String identifier = fastaRecord.getIdentifier();
             // HACK: don't allow spaces or tabs in primary identifiers; set symbol=extra part if present
             String symbol = null;
             String[] spaceChunks = identifier.split(" ");
@@ -298,6 +385,10 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
                 identifier = tabChunks[0];
                 symbol = tabChunks[1];
             }
+            if (flushGeneModels) {
+                putFastaJoin(proteinFastaJoins, identifier, new FastaJoin(sequence, residues.length(), md5checksum, symbol, isPrimary()));
+                continue;
+            }
             // Protein Item
             Item protein = getProtein(identifier);
             if (isPrimary()) protein.setAttribute("isPrimary", "true");
@@ -306,22 +397,24 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
             protein.setAttribute("md5checksum", md5checksum);
             if (symbol!=null) protein.setAttribute("symbol", symbol);
         }
+        fastaReader.close();
     }
 
     /**
-     * Process a CDS nucleotide FASTA fna file
+     * Process a CDS nucleotide FASTA fna file, one record at a time.
      */
     void processCDSFasta() throws IOException {
-        LinkedHashMap<String,DNASequence> sequenceMap = GZIPFastaReader.readFastaDNASequence(getCurrentFile());
-        for (DNASequence bioJavaSequence : sequenceMap.values()) {
-            String residues = bioJavaSequence.getSequenceAsString();
-            String md5checksum = Util.getMd5checksum(residues);
+        FastaRecordReader fastaReader = new FastaRecordReader(GZIPBufferedReader.getReader(getCurrentFile()));
+        FastaRecord fastaRecord = null;
+        while ((fastaRecord=fastaReader.next())!=null) {
+            String residues = fastaRecord.getResidues();
+            String md5checksum = fastaRecord.getMd5checksum();
             Item sequence = createItem("Sequence");
             sequence.setAttribute("residues", residues);
             sequence.setAttribute("length", String.valueOf(residues.length()));
             sequence.setAttribute("md5checksum", md5checksum);
-            sequences.add(sequence);
-            String identifier = getFastaIdentifier(bioJavaSequence);
+            storeOrHold(sequence, sequences);
+            String identifier = fastaRecord.getIdentifier();
             // HACK: don't allow spaces or tabs in primary identifiers; set symbol=extra part if present
             String symbol = null;
             String[] spaceChunks = identifier.split(" ");
@@ -334,6 +427,10 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
                 identifier = tabChunks[0];
                 symbol = tabChunks[1];
             }
+            if (flushGeneModels) {
+                putFastaJoin(cdsFastaJoins, identifier, new FastaJoin(sequence, residues.length(), null, symbol, isPrimary()));
+                continue;
+            }
             // CDS Item
             Item cds = getCDS(identifier);
             if (isPrimary()) cds.setAttribute("isPrimary", "true");
@@ -341,22 +438,24 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
             cds.setAttribute("length", String.valueOf(residues.length()));
             if (symbol!=null) cds.setAttribute("symbol", symbol);
         }
+        fastaReader.close();
     }
 
     /**
-     * Process an mRNA nucleotide FASTA fna file
+     * Process an mRNA nucleotide FASTA fna file, one record at a time.
      */
     void processMRNAFasta() throws IOException {
-        LinkedHashMap<String,DNASequence> sequenceMap = GZIPFastaReader.readFastaDNASequence(getCurrentFile());
-        for (DNASequence bioJavaSequence : sequenceMap.values()) {
-            String residues = bioJavaSequence.getSequenceAsString();
-            String md5checksum = Util.getMd5checksum(residues);
+        FastaRecordReader fastaReader = new FastaRecordReader(GZIPBufferedReader.getReader(getCurrentFile()));
+        FastaRecord fastaRecord = null;
+        while ((fastaRecord=fastaReader.next())!=null) {
+            String residues = fastaRecord.getResidues();
+            String md5checksum = fastaRecord.getMd5checksum();
             Item sequence = createItem("Sequence");
             sequence.setAttribute("residues", residues);
             sequence.setAttribute("length", String.valueOf(residues.length()));
             sequence.setAttribute("md5checksum", md5checksum);
-            sequences.add(sequence);
-            String identifier = getFastaIdentifier(bioJavaSequence);
+            storeOrHold(sequence, sequences);
+            String identifier = fastaRecord.getIdentifier();
             // some mRNA FASTAs contain non-mRNAs, hopefully identified by their identifier
             if (identifier.contains("rRNA")) continue;
             if (identifier.contains("tRNA")) continue;
@@ -374,6 +473,10 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
                 identifier = tabChunks[0];
                 symbol = tabChunks[1];
             }
+            if (flushGeneModels) {
+                putFastaJoin(mrnaFastaJoins, identifier, new FastaJoin(sequence, residues.length(), null, symbol, isPrimary()));
+                continue;
+            }
             // MRNA Item
             Item mRNA = getMRNA(identifier);
             if (isPrimary()) mRNA.setAttribute("isPrimary", "true");
@@ -381,6 +484,7 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
             mRNA.setAttribute("length", String.valueOf(residues.length()));
             if (symbol!=null) mRNA.setAttribute("symbol", symbol);
         }
+        fastaReader.close();
     }
     
     /**
@@ -420,11 +524,16 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
             Item geneFamily = getGeneFamily(geneFamilyIdentifier);
             // scores go into GeneFamilyAssignment
             Item gfa = createItem("GeneFamilyAssignment");
-            geneFamilyAssignments.add(gfa);
             if (evalue>0.0) gfa.setAttribute("evalue", String.valueOf(evalue));
             if (score>0.0) gfa.setAttribute("score", String.valueOf(score));
             if (bestDomainScore>0.0) gfa.setAttribute("bestDomainScore", String.valueOf(bestDomainScore));
             gfa.setReference("geneFamily", geneFamily);
+            storeOrHold(gfa, geneFamilyAssignments);
+            if (flushGeneModels) {
+                geneGFAJoins.computeIfAbsent(geneIdentifier, k -> new ArrayList<>()).add(new GFAJoin(gfa, geneFamily));
+                proteinGFAJoins.computeIfAbsent(proteinIdentifier, k -> new ArrayList<>()).add(new GFAJoin(gfa, geneFamily));
+                continue;
+            }
             // Gene
             Item gene = getGene(geneIdentifier);
             gene.addToCollection("geneFamilyAssignments", gfa);
@@ -455,8 +564,12 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
                 String geneIdentifier = fields[2];
                 Item pathway = getPathway(pathwayIdentifier);
                 pathway.setAttribute("name", pathwayName);
-                Item gene = getGene(geneIdentifier);
-                gene.addToCollection("pathways", pathway);
+                if (flushGeneModels) {
+                    genePathwayJoins.computeIfAbsent(geneIdentifier, k -> new ArrayList<>()).add(pathway);
+                } else {
+                    Item gene = getGene(geneIdentifier);
+                    gene.addToCollection("pathways", pathway);
+                }
             } else {
                 throw new RuntimeException("Pathway file "+getCurrentFile().getName()+" does not have three fields in this line:\n"+line);
             }
@@ -464,53 +577,43 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
     }
 
     /**
-     * Process a gzipped GFF3 file.
-     * Because GFFReader does not handle gzipped files, we have to dump the file to /tmp first and then read that.
+     * Process a gzipped GFF3 file, streaming one feature line at a time.
      * Assumes that ID=gensp.strain.gnm.ann.identifier and Name=name.
      */
-    void processGeneModelsMainGFF3File() throws IOException, RuntimeException {
+    void processGeneModelsMainGFF3File(File file) throws IOException, RuntimeException {
         if (readme==null) {
-            throw new RuntimeException("README not read before "+getCurrentFile().getName()+". Aborting.");
-        }
-        // uncompress the gff3.gz file to a temp file
-        File tempfile = new File(TEMPGENEFILE);
-        tempfile.delete();
-        BufferedWriter writer = new BufferedWriter(new FileWriter(tempfile));
-        BufferedReader reader = GZIPBufferedReader.getReader(getCurrentFile());
-        String line = null;
-        while ( (line=reader.readLine())!=null ) {
-            writer.write(line);
-            writer.newLine();
+            throw new RuntimeException("README not read before "+file.getName()+". Aborting.");
         }
-        writer.close();
-        // now load the uncompressed GFF
-        FeatureList featureList = GFF3Reader.read(TEMPGENEFILE);
-        for (FeatureI featureI : featureList) {
-            String seqname = featureI.seqname();
-            Location location = featureI.location();
-            String type = featureI.type();
+        GFF3RecordReader gffReader = new GFF3RecordReader(GZIPBufferedReader.getReader(file));
+        GFF3Record record = null;
+        while ((record=gffReader.next())!=null) {
+            String seqname = record.getSeqname();
+            Location location = Location.fromBio(record.getStart(), record.getEnd(), record.getStrand());
+            String type = record.getType();
             // spec attributes
-            String id = getAttribute(featureI, "ID");
-            String name = getAttribute(featureI, "Name");
-            String alias = getAttribute(featureI, "Alias");
-            String parent = getAttribute(featureI, "Parent");
-            String target = getAttribute(featureI, "Target");
-            String gap = getAttribute(featureI, "Gap");
-            String derivesFrom = getAttribute(featureI, "Derives_from");
-            String note = getAttribute(featureI, "Note");
-            String dbxref = getAttribute(featureI, "Dbxref");
-            String ontology_term = getAttribute(featureI, "Ontology_term");
-            String isCircular = getAttribute(featureI, "Is_circular");
+            String id = record.getAttribute("ID");
+            String name = record.getAttribute("Name");
+            String alias = record.getAttribute("Alias");
+            String parent = record.getAttribute("Parent");
+            String target = record.getAttribute("Target");
+            String gap = record.getAttribute("Gap");
+            String derivesFrom = record.getAttribute("Derives_from");
+            String note = record.getAttribute("Note");
+            String dbxref = record.getAttribute("Dbxref");
+            String ontology_term = record.getAttribute("Ontology_term");
+            String isCircular = record.getAttribute("Is_circular");
             // LIS attributes
-            String alleles = getAttribute(featureI, "alleles");
-            String symbol = getAttribute(featureI, "symbol");
+            String alleles = record.getAttribute("alleles");
+            String symbol = record.getAttribute("symbol");
             // check that id exists and matches collection
             if (id==null) {
-                throw new RuntimeException("GFF line does not include ID: "+featureI.toString());
+                throw new RuntimeException("GFF line does not include ID: "+record.toString());
             }
             if (!matchesCollection(id)) {
                 throw new RuntimeException("ID "+id+" does not match collection "+readme.identifier);
             }
+            // store the gene models that can't have any more children, and add this feature to its own
+            if (flushGeneModels) addToGeneModel(id, parent, seqname, record.getStart(), record.getEnd());
             // get associated class
             String featureClass = featureClasses.get(type);
             if (featureClass==null) {
@@ -609,6 +712,12 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
                 }
             }
         }
+        gffReader.close();
+        if (flushGeneModels) {
+            for (GeneModel geneModel : openGeneModels) flushGeneModel(geneModel);
+            openGeneModels.clear();
+            openGeneModelIds.clear();
+        }
     }
 
     /**
@@ -626,44 +735,33 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
      * therefore we prefix for primaryIdentifier and store plain ID as secondaryIdentifier.
      *
      */
-    void processIPRScanGFF3() throws IOException {
+    void processIPRScanGFF3(File file) throws IOException {
         // get prefix for uniquefying ProteinMatch and ProteinHmmMatch primaryIdentifier
-        String prefix = DatastoreUtils.extractPrefixFromAnnotationFilename(getCurrentFile().getName());
-        // uncompress the gff3.gz file to a temp file
-        File tempfile = new File(TEMPIPRSCANFILE);
-        tempfile.delete();
-        BufferedWriter writer = new BufferedWriter(new FileWriter(tempfile));
-        BufferedReader reader = GZIPBufferedReader.getReader(getCurrentFile());
-        String line = null;
-        while ( (line=reader.readLine())!=null ) {
-            writer.write(line);
-            writer.newLine();
-        }
-        writer.close();
-        // now load the uncompressed GFF
-        FeatureList featureList = GFF3Reader.read(TEMPIPRSCANFILE);
-        for (FeatureI featureI : featureList) {
-            String seqname = featureI.seqname();
-            Location location = featureI.location();
-            String type = featureI.type();
+        String prefix = DatastoreUtils.extractPrefixFromAnnotationFilename(file.getName());
+        // stream the GFF straight off the gzip
+        GFF3RecordReader gffReader = new GFF3RecordReader(GZIPBufferedReader.getReader(file));
+        GFF3Record record = null;
+        while ((record=gffReader.next())!=null) {
+            String seqname = record.getSeqname();
+            Location location = Location.fromBio(record.getStart(), record.getEnd(), record.getStrand());
+            String type = record.getType();
             // feature
             Item feature = getFeatureOnProtein(type, seqname, location);
-            String id = getAttribute(featureI, "ID");
+            String id = record.getAttribute("ID");
             if (type.equals("protein_match") || type.equals("protein_hmm_match")) {
                 // prefix for unique primaryIdentifier
                 feature.setAttribute("name", id);
                 id = prefix + "." + id;
             }
             feature.setAttribute("primaryIdentifier", id);
-            features.put(id, feature);
             // source isn't supplied by FeatureI
             // feature.setAttribute("source", rec.getSource());
             // attributes
-            String name = getAttribute(featureI, "Name");
-            String status = getAttribute(featureI, "status");
-            String date = getAttribute(featureI, "date");
-            String target = getAttribute(featureI, "Target");
-            String signatureDesc = getAttribute(featureI, "signature_desc");
+            String name = record.getAttribute("Name");
+            String status = record.getAttribute("status");
+            String date = record.getAttribute("date");
+            String target = record.getAttribute("Target");
+            String signatureDesc = record.getAttribute("signature_desc");
             // accession=Name
             feature.setAttribute("accession", name);
             // status
@@ -674,6 +772,193 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
             if (target!=null) feature.setAttribute("target", target);
             // signatureDesc
             if (signatureDesc!=null) feature.setAttribute("signatureDesc", signatureDesc);
+            // protein matches are complete here, so there's no need to hold them when flushing gene models
+            if (flushGeneModels) {
+                if (publication!=null) feature.addToCollection("publications", publication);
+                try {
+                    store(feature);
+                } catch (ObjectStoreException ex) {
+                    throw new RuntimeException(ex);
+                }
+            } else {
+                features.put(id, feature);
+            }
+        }
+        gffReader.close();
+    }
+
+    /**
+     * Store the open gene models that can't get any more children from a GFF3 sorted by seqname and start: those on another seqname
+     * or ending before this feature's start. Then add this feature to its parents' gene model, or open a new one for a top-level feature.
+     */
+    void addToGeneModel(String id, String parent, String seqname, int start, int end) {
+        for (int i=openGeneModels.size()-1; i>=0; i--) {
+            GeneModel geneModel = openGeneModels.get(i);
+            if (!geneModel.seqname.equals(seqname) || geneModel.end<start) {
+                openGeneModels.remove(i);
+                for (String openId : geneModel.ids) openGeneModelIds.remove(openId);
+                flushGeneModel(geneModel);
+            }
+        }
+        GeneModel geneModel = openGeneModelIds.get(id);
+        if (parent!=null) {
+            for (String p : parent.split(",")) {
+                GeneModel parentModel = openGeneModelIds.get(p);
+                if (parentModel==null) {
+                    throw new RuntimeException("Parent "+p+" of "+id+" is not in an open gene model. flushGeneModels=true requires a GFF3 sorted by seqname and start"+
+                                               " with each feature lying within its top-level feature.");
+                }
+                if (geneModel==null) {
+                    geneModel = parentModel;
+                } else if (parentModel!=geneModel) {
+                    // a feature with parents in two subtrees joins them into one gene model
+                    for (String parentId : parentModel.ids) openGeneModelIds.put(parentId, geneModel);
+                    geneModel.ids.addAll(parentModel.ids);
+                    geneModel.end = Math.max(geneModel.end, parentModel.end);
+                    openGeneModels.remove(parentModel);
+                }
+            }
+        }
+        if (geneModel==null) {
+            geneModel = new GeneModel(seqname, end);
+            openGeneModels.add(geneModel);
+        }
+        geneModel.end = Math.max(geneModel.end, end);
+        geneModel.ids.add(id);
+        openGeneModelIds.put(id, geneModel);
+    }
+
+    /**
+     * Store the genes, mRNAs and other features of a closed GFF3 subtree, along with the CDS and Protein Items that share an mRNA's
+     * primaryIdentifier, with their FASTA, GFA and pathway join state, then release them from the maps. The joins done in close() are done here instead.
+     */
+    void flushGeneModel(GeneModel geneModel) {
+        try {
+            for (String id : geneModel.ids) {
+                if (mRNAs.containsKey(id)) {
+                    // the CDS and protein are usually created from the mRNA's gene Parent, but may only be in a FASTA or GFA
+                    if (cdsFastaJoins.containsKey(id)) getCDS(id);
+                    if (proteinFastaJoins.containsKey(id) || proteinGFAJoins.containsKey(id)) getProtein(id);
+                    Item mRNA = mRNAs.remove(id);
+                    Item cds = cdses.remove(id);
+                    Item protein = proteins.remove(id);
+                    joinFasta(mRNA, mrnaFastaJoins.remove(id));
+                    if (cds!=null) {
+                        joinFasta(cds, cdsFastaJoins.remove(id));
+                        cds.setReference("transcript", mRNA);
+                        mRNA.addToCollection("CDSs", cds);
+                        if (protein!=null) cds.setReference("protein", protein);
+                        storeGeneModelItem(cds);
+                    }
+                    if (protein!=null) {
+                        joinProtein(protein, id);
+                        protein.setReference("transcript", mRNA);
+                        mRNA.setReference("protein", protein);
+                        if (cds!=null) protein.setReference("CDS", cds);
+                        storeGeneModelItem(protein);
+                        storedProteins.put(id, protein.getIdentifier());
+                    }
+                    storeGeneModelItem(mRNA);
+                } else if (genes.containsKey(id)) {
+                    Item gene = genes.remove(id);
+                    joinGene(gene, id);
+                    storeGeneModelItem(gene);
+                } else if (features.containsKey(id)) {
+                    storeGeneModelItem(features.remove(id));
+                }
+            }
+        } catch (ObjectStoreException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * After the gene models are stored, put the join state of proteins, CDSes, mRNAs and genes that aren't in the GFF3 onto held Items,
+     * as if flushGeneModels were false, for close() to join and store.
+     */
+    void holdUnjoinedItems() {
+        for (String id : new ArrayList<>(mrnaFastaJoins.keySet())) joinFasta(getMRNA(id), mrnaFastaJoins.remove(id));
+        for (String id : new ArrayList<>(cdsFastaJoins.keySet())) joinFasta(getCDS(id), cdsFastaJoins.remove(id));
+        for (String id : new ArrayList<>(proteinFastaJoins.keySet())) joinProtein(getProtein(id), id);
+        for (String id : new ArrayList<>(proteinGFAJoins.keySet())) joinProtein(getProtein(id), id);
+        for (String id : new ArrayList<>(geneGFAJoins.keySet())) joinGene(getGene(id), id);
+        for (String id : new ArrayList<>(genePathwayJoins.keySet())) joinGene(getGene(id), id);
+    }
+
+    /**
+     * Hold a FASTA record's join state; as with the Items, a record in both the full and _primary FASTA keeps isPrimary and its symbol.
+     */
+    void putFastaJoin(Map<String,FastaJoin> fastaJoins, String identifier, FastaJoin join) {
+        FastaJoin previous = fastaJoins.put(identifier, join);
+        if (previous!=null) {
+            if (previous.primary) join.primary = true;
+            if (join.symbol==null) join.symbol = previous.symbol;
+        }
+    }
+
+    /**
+     * Set the FASTA-sourced attributes on a protein, CDS or mRNA, if it was in a FASTA.
+     */
+    void joinFasta(Item item, FastaJoin join) {
+        if (join==null) return;
+        if (join.primary) item.setAttribute("isPrimary", "true");
+        item.setReference("sequence", join.sequence);
+        item.setAttribute("length", String.valueOf(join.length));
+        if (join.md5checksum!=null) item.setAttribute("md5checksum", join.md5checksum);
+        if (join.symbol!=null) item.setAttribute("symbol", join.symbol);
+    }
+
+    /**
+     * Add a protein's FASTA and GFA join state to it, releasing the join state.
+     */
+    void joinProtein(Item protein, String id) {
+        joinFasta(protein, proteinFastaJoins.remove(id));
+        List<GFAJoin> gfaJoins = proteinGFAJoins.remove(id);
+        if (gfaJoins!=null) {
+            for (GFAJoin gfaJoin : gfaJoins) {
+                protein.addToCollection("geneFamilyAssignments", gfaJoin.geneFamilyAssignment);
+                gfaJoin.geneFamily.addToCollection("proteins", protein);
+            }
+        }
+    }
+
+    /**
+     * Add a gene's GFA and pathway join state to it, releasing the join state.
+     */
+    void joinGene(Item gene, String id) {
+        List<GFAJoin> gfaJoins = geneGFAJoins.remove(id);
+        if (gfaJoins!=null) {
+            for (GFAJoin gfaJoin : gfaJoins) {
+                gene.addToCollection("geneFamilyAssignments", gfaJoin.geneFamilyAssignment);
+                gfaJoin.geneFamily.addToCollection("genes", gene);
+            }
+        }
+        List<Item> genePathways = genePathwayJoins.remove(id);
+        if (genePathways!=null) {
+            for (Item pathway : genePathways) gene.addToCollection("pathways", pathway);
+        }
+    }
+
+    /**
+     * Add the publication to a gene model Item and store it.
+     */
+    void storeGeneModelItem(Item item) throws ObjectStoreException {
+        if (publication!=null) item.addToCollection("publications", publication);
+        store(item);
+    }
+
+    /**
+     * Store an Item that is complete on creation right away when flushing gene models; otherwise hold it until close().
+     */
+    void storeOrHold(Item item, List<Item> heldItems) {
+        if (flushGeneModels) {
+            try {
+                store(item);
+            } catch (ObjectStoreException ex) {
+                throw new RuntimeException(ex);
+            }
+        } else {
+            heldItems.add(item);
         }
     }
 
@@ -695,7 +980,7 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
         Item annotation = createItem("OntologyAnnotation");
         annotation.setReference("subject", feature);
         annotation.setReference("ontologyTerm", ontologyTerm);
-        ontologyAnnotations.add(annotation);
+        storeOrHold(annotation, ontologyAnnotations);
     }
 
     /**
@@ -730,7 +1015,8 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
      * Place a feature on a sequence, determining whether it's a Chromosome or Supercontig from its name and entries in datastore_config.properties.
      */
     void placeFeatureOnSequence(Item feature, String seqname, Location location) throws RuntimeException {
-        if (isChromosome(seqname)) {
+        String sequenceClass = getSequenceClass(seqname);
+        if (SequencePrefixTrie.CHROMOSOME.equals(sequenceClass)) {
             Item chromosome = getChromosome(seqname);
             // reference feature on chromosome
             feature.setReference("chromosome", chromosome);
@@ -745,9 +1031,9 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
             chromosomeLocation.setAttribute("start", String.valueOf(location.bioStart()));
             chromosomeLocation.setAttribute("end", String.valueOf(location.bioEnd()));
             chromosomeLocation.setReference("locatedOn", chromosome);
-            locations.add(chromosomeLocation);
+            storeOrHold(chromosomeLocation, locations);
             feature.setReference("chromosomeLocation", chromosomeLocation);
-        } else if (isSupercontig(seqname)) {
+        } else if (SequencePrefixTrie.SUPERCONTIG.equals(sequenceClass)) {
             Item supercontig = getSupercontig(seqname);
             // reference feature on supercontig
             feature.setReference("supercontig", supercontig);
@@ -762,7 +1048,7 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
             supercontigLocation.setAttribute("start", String.valueOf(location.bioStart()));
             supercontigLocation.setAttribute("end", String.valueOf(location.bioEnd()));
             supercontigLocation.setReference("locatedOn", supercontig);
-            locations.add(supercontigLocation);
+            storeOrHold(supercontigLocation, locations);
             feature.setReference("supercontigLocation", supercontigLocation);
         } else {
             throw new RuntimeException("Sequence "+seqname+" is not recognized as a Chromosome or Supercontig.");
@@ -773,7 +1059,9 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
      * Place a feature on a protein.
      */
     Item getFeatureOnProtein(String type, String seqname, Location location) throws RuntimeException {
-        Item protein = getProtein(seqname);
+        // a protein already stored with its gene model is referenced by its Item identifier
+        String protein = storedProteins.get(seqname);
+        if (protein==null) protein = getProtein(seqname).getIdentifier();
         Item feature = null;
         if (type.equals("protein_match")) {
             feature = createItem("ProteinMatch");
@@ -789,7 +1077,7 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
         proteinLocation.setAttribute("start", String.valueOf(location.bioStart()));
         proteinLocation.setAttribute("end", String.valueOf(location.bioEnd()));
         proteinLocation.setReference("locatedOn", protein);
-        locations.add(proteinLocation);
+        storeOrHold(proteinLocation, locations);
         feature.addToCollection("locations", proteinLocation);
         return feature;
     }
@@ -1000,25 +1288,6 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
         return getCurrentFile().getName().contains("_primary");
     }
 
-    /**
-     * For the given BioJava Sequence object, return an identifier to be used when creating the corresponding BioEntity.
-     *
-     * @param bioJavaSequence the Sequence
-     * @return an identifier
-     */
-    static String getFastaIdentifier(AbstractSequence bioJavaSequence) {
-        String identifier = null;
-        String header = bioJavaSequence.getAccession().getID();
-        String[] bits = header.split(" ");
-        if (bits[0].contains("|")) {
-            String[] subbits = bits[0].split("\\|");
-            identifier = subbits[1];
-        } else {
-            identifier = bits[0];
-        }
-        return identifier;
-    }
-
     /**
      * Return the attribute with the given field name; else null.
      * 0                                                                      1a               1b                 1c                     1d
@@ -1026,12 +1295,11 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
      * 0                                                            1a                       1b                        1c     1d                   1e   1f          1g
      * lupal.Amiga.gnm1.ann0.mRNA:Lalb_Chr00c01g0403611.1 locus_tag=Lalb_Chr00c01g0403611 gn=Lalb_Chr00c01g0403611 len=96 chr=Lalb_Chr00c01 strand=1 sp=Unknown def=Putative RNA
      *
-     * @param bioJavaSequence the AbstractSequence
+     * @param header the FASTA header
      * @param field the name of the desired field, e.g. protein_id
      * @return an identifier
      */
-    static String getFastaAttribute(AbstractSequence bioJavaSequence, String field) {
-        String header = bioJavaSequence.getAccession().getID();
+    static String getFastaAttribute(String header, String field) {
         if (!header.contains(field)) return null;
         String[] split = header.split(" "+field+"=");
         if (split.length==1) return null;
@@ -1040,17 +1308,4 @@ public class AnnotationFileConverter extends DatastoreFileConverter {
         return parts[0];
     }
 
-    /**
-     * Return an attribute for the given name ignoring case
-     */
-    static String getAttribute(FeatureI featureI, String name) {
-        Map<String,String> attributeMap = featureI.getAttributes();
-        for (String attributeName : attributeMap.keySet()) {
-            if (attributeName.equalsIgnoreCase(name)) {
-                return attributeMap.get(attributeName);
-            }
-        }
-        return null;
-    }
-
 }
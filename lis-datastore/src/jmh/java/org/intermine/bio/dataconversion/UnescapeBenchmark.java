@@ -0,0 +1,101 @@
+package org.intermine.bio.dataconversion;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.ncgr.zip.GZIPBufferedReader;
+
+/**
+ * Compares DatastoreUtils.unescape(), which decodes in a single scan and returns values without '%' as-is, with the
+ * chained replaceAll calls that it replaced, on the Note column of a datastore GFF3 as AnnotationFileConverter
+ * unescapes it.
+ *
+ * The GFF is given with -PgffFile, for example an annotation's gene_models_main:
+ *
+ * ./gradlew :bio-source-lis-datastore:jmh -PgffFile=/path/to/phavu.G19833.gnm2.ann1.PB8d.gene_models_main.gff3.gz
+ *
+ * The Note values are read into memory once, so the benchmarks measure unescaping, not I/O or GFF parsing.
+ *
+ * @author Sam Hokin
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class UnescapeBenchmark {
+
+    @Param({""})
+    public String gffFile;
+
+    List<String> notes = new ArrayList<>();
+
+    @Setup
+    public void readNotes() throws IOException {
+        if (gffFile==null || gffFile.length()==0) {
+            throw new RuntimeException("Set the GFF3 whose Note values to unescape with -PgffFile=/path/to/file.gff3.gz");
+        }
+        GFF3RecordReader gffReader = new GFF3RecordReader(GZIPBufferedReader.getReader(new File(gffFile)));
+        GFF3Record gff = null;
+        while ((gff=gffReader.next())!=null) {
+            String note = gff.getAttribute("Note");
+            if (note!=null) notes.add(note);
+        }
+        gffReader.close();
+        if (notes.size()==0) {
+            throw new RuntimeException("GFF3 file "+gffFile+" has no Note attributes.");
+        }
+    }
+
+    /**
+     * The chained replaceAll calls that DatastoreUtils.unescape() used before the single scan.
+     */
+    static String legacyUnescape(String s) {
+        return s.
+            replaceAll("%09","\t").replaceAll("%26","&").
+            replaceAll("%2509","\t").replaceAll("%2526","&").
+            replaceAll("%2C",",").replaceAll("%3B",";").replaceAll("%3D","=").
+            replaceAll("%252C",",").replaceAll("%253B",";").replaceAll("%253D","=").
+            replaceAll("%2c",",").replaceAll("%3b",";").replaceAll("%3d","=").
+            replaceAll("%252c",",").replaceAll("%253b",";").replaceAll("%253d","=");
+    }
+
+    /**
+     * Unescape every Note value with the chained replaceAll calls.
+     */
+    @Benchmark
+    public void legacy(Blackhole blackhole) {
+        for (String note : notes) {
+            blackhole.consume(legacyUnescape(note));
+        }
+    }
+
+    /**
+     * Unescape every Note value with the single scan.
+     */
+    @Benchmark
+    public void current(Blackhole blackhole) {
+        for (String note : notes) {
+            blackhole.consume(DatastoreUtils.unescape(note));
+        }
+    }
+
+}
@@ -4,9 +4,6 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
-import java.io.UnsupportedEncodingException;
-
-import java.net.MalformedURLException;
 
 import java.util.Arrays;
 import java.util.List;
@@ -15,8 +12,6 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.Properties;
 
-import javax.xml.parsers.ParserConfigurationException;
-
 import org.intermine.bio.util.BioConverterUtil;
 import org.intermine.dataconversion.FileConverter;
 import org.intermine.dataconversion.ItemWriter;
@@ -24,15 +19,7 @@ import org.intermine.metadata.Model;
 import org.intermine.objectstore.ObjectStoreException;
 import org.intermine.xml.full.Item;
 
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.JSONValue;
-import org.json.simple.parser.ParseException;
-
-import org.xml.sax.SAXException;
-
 import org.ncgr.datastore.Readme;
-import org.ncgr.crossref.WorksQuery;
 
 /**
  * Class providing standard objects and methods for Datastore file converters. Extend for your specific converter.
@@ -81,6 +68,9 @@ public abstract class DatastoreFileConverter extends FileConverter {
     String dataSetUrl;             // required in project.xml
     String dataSetLicence;         // optional
 
+    // the CrossRef/PubMed lookup started in processReadme() and joined in storeCollectionItems(), settings can be set in project.xml
+    PublicationLookup publicationLookup = new PublicationLookup();
+
     // other attributes we may need for Items
     int taxonId;
     String gensp;
@@ -96,6 +86,11 @@ public abstract class DatastoreFileConverter extends FileConverter {
 
     List<String> chromosomePrefixes = new ArrayList<>();              // from README
     List<String> supercontigPrefixes = new ArrayList<>();             // from README
+    SequencePrefixTrie sequencePrefixTrie;                            // compiled from the above on first use
+
+    // gensp.strain.assy and gensp.strain.assy.ann formed once for matchesCollection()
+    String assemblyPrefix;
+    String annotationPrefix;
 
     /**
      * Create a new DatastoreFileConverter
@@ -157,6 +152,41 @@ public abstract class DatastoreFileConverter extends FileConverter {
 	this.dataSetLicence = licence;
     }
 
+    /**
+     * publicationCacheDir can be set in project.xml to cache CrossRef/PubMed lookups on disk
+     */
+    public void setPublicationCacheDir(String dir) {
+        publicationLookup.setCacheDir(dir);
+    }
+
+    /**
+     * publicationCacheTtlDays can be set in project.xml; cached publications older than this are refetched
+     */
+    public void setPublicationCacheTtlDays(String days) {
+        publicationLookup.setCacheTtlDays(days);
+    }
+
+    /**
+     * publicationCacheMaxEntries can be set in project.xml to limit the number of cached publications
+     */
+    public void setPublicationCacheMaxEntries(String entries) {
+        publicationLookup.setCacheMaxEntries(entries);
+    }
+
+    /**
+     * publicationOffline can be set true in project.xml to only use cached publications
+     */
+    public void setPublicationOffline(String offline) {
+        publicationLookup.setOffline(offline);
+    }
+
+    /**
+     * publicationTimeout can be set in project.xml: seconds to wait at close() for the publication lookup
+     */
+    public void setPublicationTimeout(String seconds) {
+        publicationLookup.setTimeout(seconds);
+    }
+
     /**
      * Process the README file for the common collection Items stored in this class.
      * This also sets the BioStoreHook which automatically associates dataSet with stored Items.
@@ -165,16 +195,7 @@ public abstract class DatastoreFileConverter extends FileConverter {
     void processReadme(Reader reader) throws IOException {
         System.out.println("## Processing "+getCurrentFile().getName());
         readme = Readme.parse(reader);
-        // check required stuff
-        if (readme.identifier==null ||
-            readme.taxid==0 ||
-            readme.scientific_name_abbrev==null ||
-            readme.synopsis==null ||
-            readme.description==null
-            ) {
-            throw new RuntimeException("ERROR in README: a required field is missing. "+
-                                       "Required fields are: identifier, taxid, scientific_name_abbrev, synopsis, description");
-        }
+        checkReadme(readme);
         if (dataSetUrl==null) {
             throw new RuntimeException("ERROR: dataSetUrl must be set in project.xml.");
         }
@@ -196,17 +217,15 @@ public abstract class DatastoreFileConverter extends FileConverter {
                 supercontigPrefixes.add(prefix.trim());
             }
         }
+        sequencePrefixTrie = null;
         // Organism
         organism = createItem("Organism");
         organism.setAttribute("taxonId", String.valueOf(taxonId));
         // Publication - optional
         if (readme.publication_doi!=null) {
+            // the Item is needed now for references; its attributes and authors are filled in by storeCollectionItems()
             publication = createItem("Publication");
-            try {
-                populatePublication(readme.publication_doi);
-            } catch (Exception ex) {
-                throw new RuntimeException(ex);
-            }
+            publicationLookup.start(readme.publication_doi);
         }
         // DataSet
         dataSet = createItem("DataSet");
@@ -215,11 +234,8 @@ public abstract class DatastoreFileConverter extends FileConverter {
         dataSet.setAttribute("description", dataSetDescription);
         dataSet.setAttribute("synopsis", readme.synopsis);
         if (publication!=null) dataSet.setReference("publication", publication);
-        if (assemblyVersion!=null && annotationVersion!=null) {
-            dataSet.setAttribute("version", assemblyVersion+"."+annotationVersion);
-        } else if (assemblyVersion!=null) {
-            dataSet.setAttribute("version", assemblyVersion);
-        }
+        String version = getDataSetVersion(readme.identifier);
+        if (version!=null) dataSet.setAttribute("version", version);
         if (dataSetLicence!=null) {
             dataSet.setAttribute("licence", dataSetLicence);
         } else {
@@ -230,6 +246,36 @@ public abstract class DatastoreFileConverter extends FileConverter {
         setStoreHook(new BioStoreHook(getModel(), dataSet.getIdentifier(), dataSource.getIdentifier(), BioConverterUtil.getOntology(this)));
     }
 
+    /**
+     * Check that a README has the fields required of every collection; also used by the direct loaders.
+     *
+     * @throws RuntimeException if a required field is missing
+     */
+    static void checkReadme(Readme readme) {
+        if (readme.identifier==null ||
+            readme.taxid==0 ||
+            readme.scientific_name_abbrev==null ||
+            readme.synopsis==null ||
+            readme.description==null
+            ) {
+            throw new RuntimeException("ERROR in README: a required field is missing. "+
+                                       "Required fields are: identifier, taxid, scientific_name_abbrev, synopsis, description");
+        }
+    }
+
+    /**
+     * Return the DataSet version from a collection identifier: assy.annot, assy, or null if it has neither.
+     */
+    static String getDataSetVersion(String collectionIdentifier) {
+        String assemblyVersion = DatastoreUtils.extractAssemblyVersionFromCollection(collectionIdentifier);
+        String annotationVersion = DatastoreUtils.extractAnnotationVersionFromCollection(collectionIdentifier);
+        if (assemblyVersion!=null && annotationVersion!=null) {
+            return assemblyVersion+"."+annotationVersion;
+        } else {
+            return assemblyVersion;
+        }
+    }
+
     /**
      * Set the instance DataSource from project.xml properties or defaults.
      */
@@ -271,15 +317,18 @@ public abstract class DatastoreFileConverter extends FileConverter {
      *   dataSet
      *   organism
      *   strain (if non-null)
-     *   publication (if non-null)
+     *   publication (if non-null), populated from the lookup started in processReadme()
+     *   authors
      *
-     * @throws RuntimeException if README not read.
+     * @throws RuntimeException if README not read, or the publication lookup fails or times out.
      */
     void storeCollectionItems() throws ObjectStoreException {
         // bail if README not read
         if (readme==null) {
             throw new RuntimeException("README not read. Aborting.");
         }
+        // wait for the publication lookup started in processReadme()
+        populatePublication();
         // store stuff
         store(dataSource);
         store(dataSet);
@@ -316,11 +365,15 @@ public abstract class DatastoreFileConverter extends FileConverter {
             throw new RuntimeException("ERROR: DatastoreFileConverter.matchesCollection(identifier) cannot run - README has not yet been read.");
         }
         setStrain();
-        String[] fields = identifier.split("\\.");
-        if (fields.length>4) {
-            return identifier.startsWith(gensp+"."+strainIdentifier+"."+assemblyVersion+"."+annotationVersion);
-        } else if (fields.length==4) {
-            return identifier.startsWith(gensp+"."+strainIdentifier+"."+assemblyVersion);
+        if (annotationPrefix==null) {
+            assemblyPrefix = gensp+"."+strainIdentifier+"."+assemblyVersion;
+            annotationPrefix = assemblyPrefix+"."+annotationVersion;
+        }
+        int fieldCount = new LisIdentifier(identifier).getFieldCount();
+        if (fieldCount>4) {
+            return identifier.startsWith(annotationPrefix);
+        } else if (fieldCount==4) {
+            return identifier.startsWith(assemblyPrefix);
         } else {
             return false;
         }
@@ -336,9 +389,9 @@ public abstract class DatastoreFileConverter extends FileConverter {
             throw new RuntimeException("ERROR: DatastoreFileConverter.matchesStrainAndAssembly(identifier) cannot run - README has not yet been read.");
         }
         setStrain();
-        String[] fields = identifier.split("\\.");
+        LisIdentifier fields = new LisIdentifier(identifier);
         try {
-            boolean matches = fields[1].equals(strainIdentifier) && fields[2].equals(assemblyVersion);
+            boolean matches = fields.getField(1).equals(strainIdentifier) && fields.getField(2).equals(assemblyVersion);
             return matches;
         } catch (Exception ex) {
             System.err.println("ERROR in DatastoreFileConverter.matchesStrainAndAssembly: ID="+identifier);
@@ -353,10 +406,7 @@ public abstract class DatastoreFileConverter extends FileConverter {
      * chromosome_prefix: chr
      */
     public boolean isChromosome(String primaryIdentifier) {
-        for (String prefix : chromosomePrefixes) {
-            if (primaryIdentifier.startsWith(gensp+"."+strainIdentifier+"."+assemblyVersion+"."+prefix)) return true;
-        }
-        return false;
+        return getSequencePrefixTrie().isChromosome(primaryIdentifier);
     }
 
     /**
@@ -366,10 +416,24 @@ public abstract class DatastoreFileConverter extends FileConverter {
      * supercontig_prefix: chr
      */
     public boolean isSupercontig(String primaryIdentifier) {
-        for (String prefix : supercontigPrefixes) {
-            if (primaryIdentifier.startsWith(gensp+"."+strainIdentifier+"."+assemblyVersion+"."+prefix)) return true;
+        return getSequencePrefixTrie().isSupercontig(primaryIdentifier);
+    }
+
+    /**
+     * Return "Chromosome" or "Supercontig" for the given primaryIdentifier based on the genome README prefixes, Chromosome first; else null.
+     */
+    public String getSequenceClass(String primaryIdentifier) {
+        return getSequencePrefixTrie().classify(primaryIdentifier);
+    }
+
+    /**
+     * Compile the chromosome and supercontig prefixes into a trie the first time it's needed after they've changed.
+     */
+    SequencePrefixTrie getSequencePrefixTrie() {
+        if (sequencePrefixTrie==null) {
+            sequencePrefixTrie = new SequencePrefixTrie(gensp+"."+strainIdentifier+"."+assemblyVersion, chromosomePrefixes, supercontigPrefixes);
         }
-        return false;
+        return sequencePrefixTrie;
     }
     
     /**
@@ -425,113 +489,35 @@ public abstract class DatastoreFileConverter extends FileConverter {
     }
     
     /**
-     * Populate the instance publication from CrossRef.
+     * Wait for the lookup started in processReadme(), then populate the instance publication and authors from it.
+     * Does nothing if there is no lookup pending or the DOI wasn't found.
      *
-     * @param doi the publication's DOI
+     * @throws RuntimeException if the lookup failed or timed out
      */
-    void populatePublication(String doi) throws UnsupportedEncodingException, MalformedURLException, ParseException, IOException, ParserConfigurationException, SAXException {
-        // query CrossRef entry from DOI
-        WorksQuery wq = new WorksQuery(doi);
-        if (wq.getStatus()!=null && wq.getStatus().equals("ok")) {
-            String title = wq.getTitle();
-            int year = 0;
-            try { year = wq.getJournalIssueYear(); } catch (Exception ex) { }
-            if (year==0) {
-                try { year = wq.getIssuedYear(); } catch (Exception ex) { }
-            }
-            String month = null;
-            try { month = String.valueOf(wq.getJournalIssueMonth()); } catch (Exception ex) { }
-            if (month==null) {
-                try { month = String.valueOf(wq.getIssuedMonth()); } catch (Exception ex) { }
-            }
-            String journal = null;
-            if (wq.getShortContainerTitle()!=null) {
-                journal = wq.getShortContainerTitle();
-            } else if (wq.getContainerTitle()!=null) {
-                journal = wq.getContainerTitle();
-            }
-            String volume = wq.getVolume();
-            String issue = wq.getIssue();
-            String pages = wq.getPage();
-            doi = wq.getDOI();
-            JSONArray authorsJSON = wq.getAuthors();
-            String firstAuthor = null;
-            if (authorsJSON!=null && authorsJSON.size()>0) {
-                JSONObject firstAuthorObject = (JSONObject) authorsJSON.get(0);
-                firstAuthor = (String) firstAuthorObject.get("family");
-                if (firstAuthorObject.get("given")!=null) firstAuthor += ", " + (String) firstAuthorObject.get("given");
-            }
-            // get PubMed ID from PubMed API
-            int pubMedId = DatastoreUtils.getPubMedId(doi);
-            // core IM model does not contain lastAuthor
-            // if (authorsJSON.size()>1) {
-            //     JSONObject lastAuthorObject = (JSONObject) authorsJSON.get(authorsJSON.size()-1);
-            //     lastAuthor = lastAuthorObject.get("family")+", "+lastAuthorObject.get("given");
-            // }
-            // update publication object
-            if (title!=null) publication.setAttribute("title", title);
-            if (firstAuthor!=null) publication.setAttribute("firstAuthor", firstAuthor);
-            if (month!=null && !month.equals("0")) publication.setAttribute("month", month);
-            if (journal!=null) publication.setAttribute("journal", journal);
-            if (volume!=null) publication.setAttribute("volume", volume);
-            if (issue!=null) publication.setAttribute("issue", issue);
-            if (pages!=null) publication.setAttribute("pages", pages);
-            if (doi!=null) publication.setAttribute("doi", doi);
-            if (year>0) publication.setAttribute("year", String.valueOf(year));
-            if (pubMedId>0) publication.setAttribute("pubMedId", String.valueOf(pubMedId));
-            // core IM model does not contain lastAuthor
-            // if (lastAuthor!=null) publication.setAttribute("lastAuthor", lastAuthor);
-                
-            // populate publication.authors
-            if (authorsJSON!=null) {
-                for (Object authorObject : authorsJSON)  {
-                    JSONObject authorJSON = (JSONObject) authorObject;
-                    // IM Author attributes from CrossRef fields
-                    String firstName = null; // there are rare occasions when firstName is missing, so we'll fill that in with a placeholder "X"
-                    if (authorJSON.get("given")==null) {
-                        firstName = "X";
-                    } else {
-                        firstName = (String) authorJSON.get("given");
-                    }
-                    // we require lastName, so if it's missing then bail on this author
-                    if (authorJSON.get("family")==null) continue;
-                    String lastName = (String) authorJSON.get("family");
-                    // split out initials if present
-                    // R. K. => R K
-                    // R.K.  => R K
-                    // Douglas R => Douglas R
-                    // Douglas R. => Douglas R
-                    String initials = null;
-                    // deal with space
-                    String[] parts = firstName.split(" ");
-                    if (parts.length==2) {
-                        if (parts[1].length()==1) {
-                            firstName = parts[0];
-                            initials = parts[1];
-                        } else if (parts[1].length()==2 && parts[1].endsWith(".")) {
-                            firstName = parts[0];
-                            initials = parts[1].substring(0,1);
-                        }
-                    }
-                    // pull initial out if it's an R.K. style first name (but not M.V.K.)
-                    if (initials==null && firstName.length()==4 && firstName.charAt(1)=='.' && firstName.charAt(3)=='.') {
-                        initials = String.valueOf(firstName.charAt(2));
-                        firstName = String.valueOf(firstName.charAt(0));
-                    }
-                    // remove trailing period from a remaining R. style first name
-                    if (firstName.length()==2 && firstName.charAt(1)=='.') {
-                        firstName = String.valueOf(firstName.charAt(0));
-                    }
-                    String name = firstName+" "+lastName;
-                    Item author = createItem("Author");
-                    author.setAttribute("firstName", firstName);
-                    author.setAttribute("lastName", lastName);
-                    author.setAttribute("name", name);
-                    if (initials!=null) author.setAttribute("initials", initials);
-                    author.addToCollection("publications", publication);
-                    authors.add(author);
-                }
-            }
+    void populatePublication() {
+        PublicationRecord record = publicationLookup.await();
+        if (record==null) return;
+        // update publication object
+        if (record.title!=null) publication.setAttribute("title", record.title);
+        if (record.firstAuthor!=null) publication.setAttribute("firstAuthor", record.firstAuthor);
+        if (record.month!=null && !record.month.equals("0")) publication.setAttribute("month", record.month);
+        if (record.journal!=null) publication.setAttribute("journal", record.journal);
+        if (record.volume!=null) publication.setAttribute("volume", record.volume);
+        if (record.issue!=null) publication.setAttribute("issue", record.issue);
+        if (record.pages!=null) publication.setAttribute("pages", record.pages);
+        if (record.doi!=null) publication.setAttribute("doi", record.doi);
+        if (record.year>0) publication.setAttribute("year", String.valueOf(record.year));
+        if (record.pubMedId>0) publication.setAttribute("pubMedId", String.valueOf(record.pubMedId));
+        // core IM model does not contain lastAuthor
+        // populate publication.authors
+        for (PublicationRecord.AuthorRecord authorRecord : record.authors) {
+            Item author = createItem("Author");
+            author.setAttribute("firstName", authorRecord.firstName);
+            author.setAttribute("lastName", authorRecord.lastName);
+            author.setAttribute("name", authorRecord.name);
+            if (authorRecord.initials!=null) author.setAttribute("initials", authorRecord.initials);
+            author.addToCollection("publications", publication);
+            authors.add(author);
         }
     }
 
@@ -565,6 +551,7 @@ public abstract class DatastoreFileConverter extends FileConverter {
                         supercontigPrefixes.add(prefix.trim());
                     }
                 }
+                sequencePrefixTrie = null;
             }
         }
     }
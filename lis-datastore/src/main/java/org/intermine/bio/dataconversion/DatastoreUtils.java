@@ -2,6 +2,9 @@ package org.intermine.bio.dataconversion;
 
 import java.io.IOException;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.xml.sax.SAXException;
@@ -24,9 +27,9 @@ public class DatastoreUtils {
      * glyma.Wm82.gnm1.ann1.Gene01
      */
     public static String extractGensp(String identifier) {
-        String[] fields = identifier.split("\\.");
-        if (fields.length>=4) {
-            return fields[0];
+        LisIdentifier fields = new LisIdentifier(identifier);
+        if (fields.getFieldCount()>=4) {
+            return fields.getField(0);
         } else {
             return null;
         }
@@ -37,8 +40,7 @@ public class DatastoreUtils {
      * strain.assy.anno.KEY4
      */
     public static String extractStrainIdentifierFromCollection(String identifier) {
-	String[] fields = identifier.split("\\.");
-        return fields[0];
+        return new LisIdentifier(identifier).getField(0);
     }
 
     /**
@@ -47,8 +49,7 @@ public class DatastoreUtils {
      * gensp.strain.assy.anno.secondaryIdentifier
      */
     public static String extractStrainIdentifierFromFeature(String identifier) {
-	String[] fields = identifier.split("\\.");
-        return fields[1];
+        return new LisIdentifier(identifier).getField(1);
     }
 
     /**
@@ -66,11 +67,11 @@ public class DatastoreUtils {
      * strains.qtl.author1_author2_year
      */
     public static String extractAssemblyVersionFromCollection(String identifier) {
-        String[] fields = identifier.split("\\.");
-        if (fields[1].equals("gwas") || fields[1].equals("map") || fields[1].equals("qtl")) {
+        LisIdentifier fields = new LisIdentifier(identifier);
+        if (fields.fieldEquals(1, "gwas") || fields.fieldEquals(1, "map") || fields.fieldEquals(1, "qtl")) {
             return null;
         } else {
-            return fields[1];
+            return fields.getField(1);
         }
     }
 
@@ -82,12 +83,7 @@ public class DatastoreUtils {
      * gensp.strain.assy.anno.secondaryIdentifier
      */
     public static String extractAssemblyVersionFromFeature(String identifier) {
-	String[] fields = identifier.split("\\.");
-        if (fields.length==4 || fields.length==5) {
-            return fields[2];
-        } else {
-            return null;
-        }
+        return new LisIdentifier(identifier).getAssemblyVersion();
     }
 
     /**
@@ -108,13 +104,13 @@ public class DatastoreUtils {
      * strain.gnmN.mrk.markerset
      */
     public static String extractAnnotationVersionFromCollection(String identifier) {
-        String[] fields = identifier.split("\\.");
-        if (fields.length<4) {
+        LisIdentifier fields = new LisIdentifier(identifier);
+        if (fields.getFieldCount()<4) {
             return null;
-        } else if (fields[2].equals("syn") || fields[2].equals("mrk")) {
+        } else if (fields.fieldEquals(2, "syn") || fields.fieldEquals(2, "mrk")) {
             return null;
         } else {
-            return fields[2];
+            return fields.getField(2);
         }
     }
 
@@ -124,9 +120,9 @@ public class DatastoreUtils {
      * gensp.strain.assy.anno.secondaryIdentifier
      */
     public static String extractAnnotationVersionFromFeature(String identifier) {
-	String[] fields = identifier.split("\\.");
-        if (fields.length==4) {
-            return fields[3];
+        LisIdentifier fields = new LisIdentifier(identifier);
+        if (fields.getFieldCount()==4) {
+            return fields.getField(3);
         } else {
             return null;
         }
@@ -137,10 +133,10 @@ public class DatastoreUtils {
      * strain.assy.xxx.key4, etc.
      */
     public static String extractKEY4(String identifier) {
-        String[] fields = identifier.split("\\.");
-        int i = fields.length -1;
-        if (fields[i].length()==4) {
-            return fields[i];
+        LisIdentifier fields = new LisIdentifier(identifier);
+        String last = fields.getField(fields.getFieldCount()-1);
+        if (last.length()==4) {
+            return last;
         } else {
             return null;
         }
@@ -163,22 +159,7 @@ public class DatastoreUtils {
      * @returns the secondaryIdentifier
      */
     public static String extractSecondaryIdentifier(String lisIdentifier, boolean isAnnotationFeature) {
-        String[] fields = lisIdentifier.split("\\.");
-        if (isAnnotationFeature && fields.length>=5) {
-            String secondaryIdentifier = fields[4];
-            for (int i=5; i<fields.length; i++) {
-        	secondaryIdentifier += "."+fields[i];
-            }
-            return secondaryIdentifier;
-        } else if (!isAnnotationFeature && fields.length>=4) {
-            String secondaryIdentifier = fields[3];
-            for (int i=4; i<fields.length; i++) {
-        	secondaryIdentifier += "."+fields[i];
-            }
-            return secondaryIdentifier;
-        } else {
-            return null;
-        }
+        return new LisIdentifier(lisIdentifier).getSecondaryIdentifier(isAnnotationFeature);
     }
 
     /**
@@ -187,21 +168,83 @@ public class DatastoreUtils {
      * medsa.XinJiangDaYe.gnm1.ann1.RKB9.iprscan.gff3.gz
      */
     public static String extractPrefixFromAnnotationFilename(String filename) {
-        String[] pieces = filename.split("\\.");
-        return pieces[0]+"."+pieces[1]+"."+pieces[2]+"."+pieces[3];
+        return new LisIdentifier(filename).getFieldsTo(4);
     }
     
     /**
-     * Unescape some URL escaped characters used in GFF notes, etc.
+     * Unescape some URL escaped characters used in GFF notes, etc. in a single scan:
+     * %09 %26 %2C %3B %3D, their double-encoded %2509 %2526 %252C %253B %253D forms, and lower-case c/b/d.
+     * Returns s itself if it contains no '%'.
      */
     public static String unescape(String s) {
-        return s.
-            replaceAll("%09","\t").replaceAll("%26","&").
-            replaceAll("%2509","\t").replaceAll("%2526","&").
-            replaceAll("%2C",",").replaceAll("%3B",";").replaceAll("%3D","=").
-            replaceAll("%252C",",").replaceAll("%253B",";").replaceAll("%253D","=").
-            replaceAll("%2c",",").replaceAll("%3b",";").replaceAll("%3d","=").
-            replaceAll("%252c",",").replaceAll("%253b",";").replaceAll("%253d","=");
+        int percent = s.indexOf('%');
+        if (percent<0) return s;
+        int length = s.length();
+        StringBuilder sb = new StringBuilder(length);
+        sb.append(s, 0, percent);
+        int i = percent;
+        while (i<length) {
+            char c = s.charAt(i);
+            if (c=='%') {
+                // double-encoded %25xx
+                if (i+4<length && s.charAt(i+1)=='2' && s.charAt(i+2)=='5') {
+                    char decoded = unescapeHex(s.charAt(i+3), s.charAt(i+4));
+                    if (decoded!=0) {
+                        sb.append(decoded);
+                        i += 5;
+                        continue;
+                    }
+                }
+                if (i+2<length) {
+                    char decoded = unescapeHex(s.charAt(i+1), s.charAt(i+2));
+                    if (decoded!=0) {
+                        sb.append(decoded);
+                        i += 3;
+                        continue;
+                    }
+                }
+            }
+            sb.append(c);
+            i++;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Return the character for the two hex digits following a % if it's one that unescape() handles, else 0.
+     */
+    static char unescapeHex(char hi, char lo) {
+        if (hi=='0' && lo=='9') return '\t';
+        if (hi=='2') {
+            if (lo=='6') return '&';
+            if (lo=='C' || lo=='c') return ',';
+        } else if (hi=='3') {
+            if (lo=='B' || lo=='b') return ';';
+            if (lo=='D' || lo=='d') return '=';
+        }
+        return 0;
+    }
+
+    /**
+     * Return the ExpressionSource attributes given by an expression collection README, for use by both the expression
+     * converter and direct loader: primaryIdentifier, synopsis, description and unit, plus geoSeries, sra and bioProject if given.
+     *
+     * @throws RuntimeException if the README lacks expression_unit
+     */
+    public static Map<String,String> getExpressionSourceAttributes(Readme readme) {
+        if (readme.expression_unit==null) {
+            throw new RuntimeException("ERROR: a required field is missing from expression README "+readme.identifier+": "+
+                                       "Required fields are: expression_unit");
+        }
+        Map<String,String> attributes = new LinkedHashMap<>();
+        attributes.put("primaryIdentifier", readme.identifier);
+        attributes.put("synopsis", readme.synopsis);
+        attributes.put("description", readme.description);
+        attributes.put("unit", readme.expression_unit);
+        if (readme.geoseries!=null) attributes.put("geoSeries", readme.geoseries);
+        if (readme.sraproject!=null) attributes.put("sra", readme.sraproject);
+        if (readme.bioproject!=null) attributes.put("bioProject", readme.bioproject);
+        return attributes;
     }
 
     /**
@@ -0,0 +1,46 @@
+package org.intermine.bio.dataconversion;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/**
+ * Reads the file relating ExpressionSamples to ontology terms, returning each row as a {sampleId, termId} pair,
+ * for use by both ExpressionFileConverter and ExpressionDirectLoaderTask.
+ *
+ * 0          1
+ * SRR5199304 PO:0009005
+ *
+ * @author Sam Hokin
+ */
+public class ExpressionOboReader {
+
+    BufferedReader reader;
+
+    /**
+     * @param reader the obo file reader
+     */
+    public ExpressionOboReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Return the next {sampleId, termId} pair, skipping comments and blank lines; or null at the end of the file.
+     */
+    public String[] next() throws IOException {
+        String line = null;
+        while ((line=reader.readLine())!=null) {
+            if (line.startsWith("#") || line.trim().length()==0) continue; // comment or blank
+            String[] parts = line.split("\t");
+            return new String[] { parts[0], parts[1] };
+        }
+        return null;
+    }
+
+    /**
+     * Close the underlying reader.
+     */
+    public void close() throws IOException {
+        reader.close();
+    }
+
+}
@@ -0,0 +1,91 @@
+package org.intermine.bio.dataconversion;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads the samples file which describes the ExpressionSamples, returning each sample as a map of ExpressionSample attribute to value,
+ * for use by both ExpressionFileConverter and ExpressionDirectLoaderTask.
+ *
+ * Only the first two columns are required.
+ * 0            1     2            3          4       5                  6        7         8                9          10
+ * #identifier  name  description  treatment  tissue  development_stage  species  genotype  replicate_group  biosample  sra_experiment
+ *
+ * @author Sam Hokin
+ */
+public class ExpressionSamplesReader {
+
+    // map the optional header attributes to the corresponding ExpressionSample attributes
+    static final Map<String,String> OPTIONAL_ATTRIBUTES = new LinkedHashMap<>();
+    static {
+        OPTIONAL_ATTRIBUTES.put("description", "description");
+        OPTIONAL_ATTRIBUTES.put("treatment", "treatment");
+        OPTIONAL_ATTRIBUTES.put("tissue", "tissue");
+        OPTIONAL_ATTRIBUTES.put("development_stage", "developmentStage");
+        OPTIONAL_ATTRIBUTES.put("species", "species");
+        OPTIONAL_ATTRIBUTES.put("genotype", "genotype");
+        OPTIONAL_ATTRIBUTES.put("replicate_group", "replicateGroup");
+        OPTIONAL_ATTRIBUTES.put("biosample", "bioSample");
+        OPTIONAL_ATTRIBUTES.put("sra_experiment", "sraExperiment");
+    }
+
+    BufferedReader reader;
+    String[] colnames;
+    int num = 0;
+
+    /**
+     * @param reader the samples file reader
+     */
+    public ExpressionSamplesReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Return the next sample's attributes, always including primaryIdentifier, name and num (its 1-based order in the file),
+     * plus the non-empty optional attributes; or null at the end of the file.
+     */
+    public Map<String,String> next() throws IOException {
+        String line = null;
+        while ((line=reader.readLine())!=null) {
+            if (line.startsWith("#identifier")) {
+                // use the column header names to identify column content
+                colnames = line.split("\t");
+            } else if (line.startsWith("#") || line.trim().length()==0) {
+                // comment or blank
+                continue;
+            } else {
+                // sample data row, increment num as we go down the file
+                num++;
+                String[] parts = line.split("\t");
+                Map<String,String> sample = new LinkedHashMap<>();
+                sample.put("primaryIdentifier", parts[0]);
+                sample.put("name", parts[1]);
+                sample.put("num", String.valueOf(num));
+                // optional attributes are given by column names
+                Map<String,String> attributes = new HashMap<>();
+                for (int i=0; i<colnames.length; i++) {
+                    attributes.put(colnames[i], parts[i]);
+                }
+                for (String key : OPTIONAL_ATTRIBUTES.keySet()) {
+                    if (attributes.get(key)!=null && attributes.get(key).trim().length()>0) {
+                        sample.put(OPTIONAL_ATTRIBUTES.get(key), attributes.get(key));
+                    }
+                }
+                return sample;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Close the underlying reader.
+     */
+    public void close() throws IOException {
+        reader.close();
+    }
+
+}
@@ -0,0 +1,103 @@
+package org.intermine.bio.dataconversion;
+
+import java.util.List;
+
+/**
+ * A block of rows from an expression values file, held column-wise in primitive arrays indexed by row and sample:
+ * the parsed values in a double[], and the original numeric text of each cell so that it can be loaded without a
+ * parse/format round trip.
+ *
+ * gene_id	SRR5199304	SRR5199305	SRR5199306	SRR5199307	...
+ * cajca.ICPL87119.gnm1.ann1.C.cajan_00002	0	0	0	0	...
+ *
+ * @author Sam Hokin
+ */
+public class ExpressionValuesBlock {
+
+    int sampleCount;
+    int rowCount;
+    String[] geneIds;
+    int[] cellCounts;  // number of values on each row, which may be fewer than sampleCount
+    double[] values;   // values[row*sampleCount+sample]
+    String[] text;     // text[row*sampleCount+sample]
+
+    /**
+     * Tokenize and parse the given values lines.
+     *
+     * @param lines the data lines, without header, comment or blank lines
+     * @param sampleCount the number of samples in the header
+     * @throws RuntimeException if a line has more values than samples or a value is not a number
+     */
+    public ExpressionValuesBlock(List<String> lines, int sampleCount) {
+        this.sampleCount = sampleCount;
+        rowCount = lines.size();
+        geneIds = new String[rowCount];
+        cellCounts = new int[rowCount];
+        values = new double[rowCount*sampleCount];
+        text = new String[rowCount*sampleCount];
+        for (int row=0; row<rowCount; row++) {
+            String line = lines.get(row);
+            // trailing empty values are dropped, as by split()
+            int length = line.length();
+            while (length>0 && line.charAt(length-1)=='\t') length--;
+            int tab = line.indexOf('\t');
+            if (tab<0 || tab>length) tab = length;
+            geneIds[row] = line.substring(0, tab);
+            int cell = 0;
+            int offset = row*sampleCount;
+            while (tab<length) {
+                int from = tab + 1;
+                tab = line.indexOf('\t', from);
+                if (tab<0 || tab>length) tab = length;
+                if (cell==sampleCount) {
+                    throw new RuntimeException("Expression values line has more values than there are samples ("+sampleCount+"): "+geneIds[row]);
+                }
+                String valueText = line.substring(from, tab).trim();
+                try {
+                    values[offset+cell] = Double.parseDouble(valueText);
+                } catch (NumberFormatException ex) {
+                    throw new RuntimeException("Expression value "+valueText+" for "+geneIds[row]+" is not a number.");
+                }
+                text[offset+cell] = valueText;
+                cell++;
+            }
+            cellCounts[row] = cell;
+        }
+    }
+
+    /**
+     * @return the number of rows in this block
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return the gene identifier on the given row
+     */
+    public String getGeneId(int row) {
+        return geneIds[row];
+    }
+
+    /**
+     * @return the number of values on the given row
+     */
+    public int getCellCount(int row) {
+        return cellCounts[row];
+    }
+
+    /**
+     * @return the parsed value for the given row and sample index
+     */
+    public double getValue(int row, int sample) {
+        return values[row*sampleCount+sample];
+    }
+
+    /**
+     * @return the value text as given in the file for the given row and sample index
+     */
+    public String getText(int row, int sample) {
+        return text[row*sampleCount+sample];
+    }
+
+}
@@ -0,0 +1,144 @@
+package org.intermine.bio.dataconversion;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads an expression values file in blocks of rows, so that a whole gene x sample matrix never has to be held in memory.
+ *
+ * The header line must start with gene_id followed by the tab-separated sample identifiers.
+ *
+ * With threads>1, blocks of lines are tokenized and parsed on a pool of worker threads while the calling thread reads
+ * ahead in the file; blocks are still returned in file order, and at most 2*threads blocks are in flight.
+ *
+ * @author Sam Hokin
+ */
+public class ExpressionValuesReader {
+
+    // number of values file rows parsed and stored at a time by the expression loaders
+    public static final int DEFAULT_ROW_BATCH_SIZE = 1000;
+
+    BufferedReader reader;
+    String[] sampleIds;
+
+    // parallel parsing
+    int threads;
+    ExecutorService executor;
+    Deque<Future<ExpressionValuesBlock>> blocks = new ArrayDeque<>();
+    boolean endOfFile = false;
+
+    /**
+     * Read up to and including the header line; blocks are parsed on the calling thread.
+     *
+     * @param reader the values file reader
+     * @throws RuntimeException if there is no gene_id header line before the data
+     */
+    public ExpressionValuesReader(BufferedReader reader) throws IOException {
+        this(reader, 1);
+    }
+
+    /**
+     * Read up to and including the header line.
+     *
+     * @param reader the values file reader
+     * @param threads the number of threads parsing blocks; 1 parses them on the calling thread
+     * @throws RuntimeException if there is no gene_id header line before the data
+     */
+    public ExpressionValuesReader(BufferedReader reader, int threads) throws IOException {
+        this.reader = reader;
+        this.threads = threads;
+        if (threads>1) {
+            executor = Executors.newFixedThreadPool(threads);
+        }
+        String line = readDataLine();
+        if (line==null) {
+            throw new RuntimeException("Expression values file has no gene_id header line.");
+        }
+        String[] parts = line.split("\t");
+        if (!parts[0].equals("gene_id")) {
+            throw new RuntimeException("Expression values file must start with a gene_id header line: "+line);
+        }
+        sampleIds = new String[parts.length-1];
+        System.arraycopy(parts, 1, sampleIds, 0, sampleIds.length);
+    }
+
+    /**
+     * @return the sample identifiers in column order
+     */
+    public String[] getSampleIds() {
+        return sampleIds;
+    }
+
+    /**
+     * Return up to maxRows raw data lines, or an empty list at the end of the file.
+     */
+    public List<String> nextLines(int maxRows) throws IOException {
+        List<String> lines = new ArrayList<>(maxRows);
+        String line = null;
+        while (lines.size()<maxRows && (line=readDataLine())!=null) {
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    /**
+     * Return the next block of up to maxRows parsed rows, or null at the end of the file.
+     */
+    public ExpressionValuesBlock nextBlock(int maxRows) throws IOException {
+        if (executor==null) {
+            List<String> lines = nextLines(maxRows);
+            if (lines.size()==0) return null;
+            return new ExpressionValuesBlock(lines, sampleIds.length);
+        }
+        // keep the workers busy by reading ahead up to 2*threads blocks
+        while (!endOfFile && blocks.size()<2*threads) {
+            final List<String> lines = nextLines(maxRows);
+            if (lines.size()==0) {
+                endOfFile = true;
+            } else {
+                final int sampleCount = sampleIds.length;
+                blocks.add(executor.submit(() -> new ExpressionValuesBlock(lines, sampleCount)));
+            }
+        }
+        if (blocks.size()==0) return null;
+        try {
+            return blocks.remove().get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) throw (RuntimeException) ex.getCause();
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    /**
+     * Return the next line that isn't a comment or blank, or null at the end of the file.
+     */
+    String readDataLine() throws IOException {
+        String line = null;
+        while ((line=reader.readLine())!=null) {
+            if (line.startsWith("#") || line.trim().length()==0) continue; // comment or blank
+            return line;
+        }
+        return null;
+    }
+
+    /**
+     * Close the underlying reader and stop the worker threads.
+     */
+    public void close() throws IOException {
+        if (executor!=null) executor.shutdownNow();
+        reader.close();
+    }
+
+}
@@ -0,0 +1,74 @@
+package org.intermine.bio.dataconversion;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A single FASTA record as returned by FastaRecordReader: the header line without the leading '>',
+ * the residues, and the MD5 checksum computed while the residues were read (or on request, if the reader was told not to).
+ *
+ * @author Sam Hokin
+ */
+public class FastaRecord {
+
+    String header;
+    String residues;
+    String md5checksum;
+
+    FastaRecord(String header, String residues, String md5checksum) {
+        this.header = header;
+        this.residues = residues;
+        this.md5checksum = md5checksum;
+    }
+
+    /**
+     * @return the full header line without the leading '>'
+     */
+    public String getHeader() {
+        return header;
+    }
+
+    /**
+     * @return the residues with line breaks and surrounding whitespace removed
+     */
+    public String getResidues() {
+        return residues;
+    }
+
+    /**
+     * @return the number of residues
+     */
+    public int getLength() {
+        return residues.length();
+    }
+
+    /**
+     * Return the lower-case hex MD5 checksum of the residues, identical to Util.getMd5checksum(residues).
+     * If it wasn't computed by the reader it is computed here, which allows hashing to be done on worker threads.
+     */
+    public String getMd5checksum() {
+        if (md5checksum==null) {
+            try {
+                MessageDigest md5 = MessageDigest.getInstance("MD5");
+                md5checksum = FastaRecordReader.toHex(md5.digest(residues.getBytes()));
+            } catch (NoSuchAlgorithmException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+        return md5checksum;
+    }
+
+    /**
+     * Return the identifier used when creating the corresponding BioEntity: the first space-separated word of the header,
+     * or the second pipe-separated piece of that word if it contains pipes.
+     */
+    public String getIdentifier() {
+        int space = header.indexOf(' ');
+        String firstWord = (space<0) ? header : header.substring(0, space);
+        int pipe = firstWord.indexOf('|');
+        if (pipe<0) return firstWord;
+        int nextPipe = firstWord.indexOf('|', pipe+1);
+        return (nextPipe<0) ? firstWord.substring(pipe+1) : firstWord.substring(pipe+1, nextPipe);
+    }
+
+}
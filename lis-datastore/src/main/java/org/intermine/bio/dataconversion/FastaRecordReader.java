@@ -0,0 +1,98 @@
+package org.intermine.bio.dataconversion;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Reads FASTA records one at a time from a BufferedReader, typically straight off a GZIPBufferedReader,
+ * so that only the current record's residues are held in memory. The MD5 checksum is computed as the lines are read.
+ *
+ * @author Sam Hokin
+ */
+public class FastaRecordReader {
+
+    static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    BufferedReader reader;
+    boolean computeMd5;
+    MessageDigest md5;
+    String nextHeader;
+    boolean done = false;
+
+    /**
+     * @param reader the reader supplying FASTA lines
+     */
+    public FastaRecordReader(BufferedReader reader) {
+        this(reader, true);
+    }
+
+    /**
+     * @param reader the reader supplying FASTA lines
+     * @param computeMd5 false to leave the MD5 checksum to be computed on request by FastaRecord.getMd5checksum()
+     */
+    public FastaRecordReader(BufferedReader reader, boolean computeMd5) {
+        this.reader = reader;
+        this.computeMd5 = computeMd5;
+        try {
+            md5 = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Return the next record, or null if there are no more records.
+     */
+    public FastaRecord next() throws IOException {
+        if (done) return null;
+        String line = null;
+        // find the first header
+        while (nextHeader==null) {
+            line = reader.readLine();
+            if (line==null) {
+                done = true;
+                return null;
+            }
+            if (line.startsWith(">")) nextHeader = line.substring(1).trim();
+        }
+        String header = nextHeader;
+        nextHeader = null;
+        StringBuilder residues = new StringBuilder();
+        md5.reset();
+        while ((line=reader.readLine())!=null) {
+            if (line.startsWith(">")) {
+                nextHeader = line.substring(1).trim();
+                break;
+            }
+            line = line.trim();
+            if (line.length()==0) continue;
+            residues.append(line);
+            if (computeMd5) md5.update(line.getBytes());
+        }
+        if (line==null) done = true;
+        String md5checksum = computeMd5 ? toHex(md5.digest()) : null;
+        return new FastaRecord(header, residues.toString(), md5checksum);
+    }
+
+    /**
+     * Close the underlying reader.
+     */
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Lower-case hex encoding of a digest, as produced by Util.getMd5checksum().
+     */
+    static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length*2];
+        for (int i=0; i<bytes.length; i++) {
+            chars[2*i] = HEX[(bytes[i]>>4) & 0xf];
+            chars[2*i+1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+}
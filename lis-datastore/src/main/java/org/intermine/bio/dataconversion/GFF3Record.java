@@ -0,0 +1,175 @@
+package org.intermine.bio.dataconversion;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A single GFF3 feature line, parsed with plain index scans rather than regex splits.
+ *
+ * Columns follow the GFF3 spec:
+ * 0       1      2    3     4   5     6      7     8
+ * seqid   source type start end score strand phase attributes
+ *
+ * Attributes are parsed the same way as BioJava's Feature: split on semicolons, then on the first '=',
+ * with surrounding double quotes removed from values. Values are NOT unescaped.
+ *
+ * @author Sam Hokin
+ */
+public class GFF3Record {
+
+    String line;
+    String seqname;
+    String source;
+    String type;
+    int start;
+    int end;
+    String score;
+    char strand;
+    String phase;
+    String attributeString;
+    Map<String,String> attributes;
+
+    /**
+     * Parse a GFF3 feature line. Comment and blank lines should be filtered out by the caller.
+     *
+     * @param line a tab-delimited GFF3 feature line
+     * @throws RuntimeException if the line has fewer than eight columns or non-integer coordinates
+     */
+    public GFF3Record(String line) {
+        this.line = line;
+        int[] tabs = new int[8];
+        int n = 0;
+        int pos = -1;
+        while (n<8 && (pos=line.indexOf('\t', pos+1))>=0) {
+            tabs[n++] = pos;
+        }
+        if (n<7) {
+            throw new RuntimeException("GFF line has fewer than eight tab-separated fields: "+line);
+        }
+        // the attributes column may be missing altogether
+        int lastEnd = (n==8) ? tabs[7] : line.length();
+        seqname = line.substring(0, tabs[0]).trim();
+        source = line.substring(tabs[0]+1, tabs[1]).trim();
+        type = line.substring(tabs[1]+1, tabs[2]).trim();
+        try {
+            start = Integer.parseInt(line.substring(tabs[2]+1, tabs[3]).trim());
+            end = Integer.parseInt(line.substring(tabs[3]+1, tabs[4]).trim());
+        } catch (NumberFormatException ex) {
+            throw new RuntimeException("GFF line has non-integer start or end: "+line);
+        }
+        score = line.substring(tabs[4]+1, tabs[5]).trim();
+        String strandString = line.substring(tabs[5]+1, tabs[6]).trim();
+        strand = (strandString.length()>0) ? strandString.charAt(0) : '.';
+        phase = line.substring(tabs[6]+1, lastEnd).trim();
+        if (n==8) {
+            attributeString = line.substring(tabs[7]+1);
+            // BioJava's GFF3Reader drops anything after a #, so we do too
+            int hash = attributeString.indexOf('#');
+            if (hash>=0) attributeString = attributeString.substring(0, hash);
+        } else {
+            attributeString = "";
+        }
+    }
+
+    public String getSeqname() {
+        return seqname;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return the 1-based start coordinate
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * @return the 1-based, inclusive end coordinate
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * @return the length end-start+1
+     */
+    public int getLength() {
+        return end - start + 1;
+    }
+
+    /**
+     * @return the score column as given, "." if missing
+     */
+    public String getScore() {
+        return score;
+    }
+
+    /**
+     * @return '+', '-' or '.'
+     */
+    public char getStrand() {
+        return strand;
+    }
+
+    public boolean isNegative() {
+        return strand=='-';
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    /**
+     * Return the attribute for the given name ignoring case; else null.
+     */
+    public String getAttribute(String name) {
+        Map<String,String> attributeMap = getAttributes();
+        for (String attributeName : attributeMap.keySet()) {
+            if (attributeName.equalsIgnoreCase(name)) {
+                return attributeMap.get(attributeName);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the attributes as a name-to-value map, parsed on first request.
+     */
+    public Map<String,String> getAttributes() {
+        if (attributes==null) {
+            attributes = new LinkedHashMap<>();
+            int from = 0;
+            int length = attributeString.length();
+            while (from<length) {
+                int semi = attributeString.indexOf(';', from);
+                if (semi<0) semi = length;
+                String attribute = attributeString.substring(from, semi).trim();
+                from = semi + 1;
+                int equals = attribute.indexOf('=');
+                if (equals<0) continue;
+                String value = attribute.substring(equals+1);
+                if (value.length()>1 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length()-1);
+                }
+                attributes.put(attribute.substring(0, equals), value);
+            }
+        }
+        return attributes;
+    }
+
+    /**
+     * @return the original GFF line
+     */
+    @Override
+    public String toString() {
+        return line;
+    }
+
+}
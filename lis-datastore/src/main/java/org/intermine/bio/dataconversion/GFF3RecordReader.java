@@ -0,0 +1,52 @@
+package org.intermine.bio.dataconversion;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/**
+ * Streams GFF3Records from a BufferedReader one line at a time, typically straight off a GZIPBufferedReader,
+ * so that neither an uncompressed temp file nor a whole-file FeatureList is needed.
+ *
+ * Comment and blank lines are skipped; reading stops at a ##FASTA directive.
+ *
+ * @author Sam Hokin
+ */
+public class GFF3RecordReader {
+
+    BufferedReader reader;
+    boolean done = false;
+
+    /**
+     * @param reader the reader supplying GFF3 lines
+     */
+    public GFF3RecordReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Return the next feature record, or null if the end of the features has been reached.
+     */
+    public GFF3Record next() throws IOException {
+        if (done) return null;
+        String line = null;
+        while ((line=reader.readLine())!=null) {
+            line = line.trim();
+            if (line.length()==0) continue;
+            if (line.charAt(0)=='#') {
+                if (line.startsWith("##FASTA") || line.startsWith("##fasta")) break;
+                continue;
+            }
+            return new GFF3Record(line);
+        }
+        done = true;
+        return null;
+    }
+
+    /**
+     * Close the underlying reader.
+     */
+    public void close() throws IOException {
+        reader.close();
+    }
+
+}
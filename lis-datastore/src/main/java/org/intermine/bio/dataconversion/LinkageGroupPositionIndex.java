@@ -0,0 +1,194 @@
+package org.intermine.bio.dataconversion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The marker positions on the linkage groups of a genetic map, sorted by cM for ordinal and range lookups.
+ *
+ * Each linkage group holds its positions and interned marker names in a pair of parallel arrays, which are grown while
+ * the mrk.tsv file is read and sorted by position on the first lookup; markers at the same position keep their file
+ * order. A rank is a marker's 0-based index in its linkage group's sorted arrays, so range and flanking-marker queries
+ * are binary searches on the positions.
+ *
+ * @author Sam Hokin
+ */
+public class LinkageGroupPositionIndex {
+
+    static final int INITIAL_CAPACITY = 64;
+
+    Map<String,LinkageGroup> linkageGroups = new LinkedHashMap<>();
+    Map<String,String> markerNames = new HashMap<>();
+    boolean sorted = true;
+
+    /**
+     * The markers on one linkage group, sorted by position once all are added.
+     */
+    static class LinkageGroup {
+        double[] positions = new double[INITIAL_CAPACITY];
+        String[] markerNames = new String[INITIAL_CAPACITY];
+        int size = 0;
+
+        void add(String markerName, double position) {
+            if (size==positions.length) {
+                positions = Arrays.copyOf(positions, 2*size);
+                markerNames = Arrays.copyOf(markerNames, 2*size);
+            }
+            positions[size] = position;
+            markerNames[size] = markerName;
+            size++;
+        }
+
+        void sort() {
+            Integer[] order = new Integer[size];
+            for (int i=0; i<size; i++) order[i] = i;
+            // stable, so markers at the same position stay in file order
+            Arrays.sort(order, (a, b) -> Double.compare(positions[a], positions[b]));
+            double[] sortedPositions = new double[size];
+            String[] sortedMarkerNames = new String[size];
+            for (int i=0; i<size; i++) {
+                sortedPositions[i] = positions[order[i]];
+                sortedMarkerNames[i] = markerNames[order[i]];
+            }
+            positions = sortedPositions;
+            markerNames = sortedMarkerNames;
+        }
+
+        /**
+         * @return the rank of the last marker with position<=position, or -1
+         */
+        int floor(double position) {
+            int low = 0;
+            int high = size - 1;
+            while (low<=high) {
+                int mid = (low + high) >>> 1;
+                if (positions[mid]<=position) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return high;
+        }
+
+        /**
+         * @return the rank of the first marker with position>=position, or size
+         */
+        int ceiling(double position) {
+            int low = 0;
+            int high = size - 1;
+            while (low<=high) {
+                int mid = (low + high) >>> 1;
+                if (positions[mid]<position) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Add a marker position on a linkage group.
+     *
+     * @param linkageGroup the linkage group identifier
+     * @param markerName the marker name, which is interned across the index
+     * @param position the position in cM
+     */
+    public void add(String linkageGroup, String markerName, double position) {
+        LinkageGroup lg = linkageGroups.get(linkageGroup);
+        if (lg==null) {
+            lg = new LinkageGroup();
+            linkageGroups.put(linkageGroup, lg);
+        }
+        String interned = markerNames.get(markerName);
+        if (interned==null) {
+            interned = markerName;
+            markerNames.put(markerName, markerName);
+        }
+        lg.add(interned, position);
+        sorted = false;
+    }
+
+    /**
+     * @return the linkage group identifiers, in the order they were first added
+     */
+    public Set<String> getLinkageGroups() {
+        return linkageGroups.keySet();
+    }
+
+    /**
+     * @return the number of markers on the given linkage group, 0 if it has none
+     */
+    public int size(String linkageGroup) {
+        LinkageGroup lg = getLinkageGroup(linkageGroup);
+        return (lg==null) ? 0 : lg.size;
+    }
+
+    /**
+     * @return the name of the marker with the given rank on the given linkage group
+     */
+    public String getMarkerName(String linkageGroup, int rank) {
+        return getLinkageGroup(linkageGroup).markerNames[rank];
+    }
+
+    /**
+     * @return the position of the marker with the given rank on the given linkage group
+     */
+    public double getPosition(String linkageGroup, int rank) {
+        return getLinkageGroup(linkageGroup).positions[rank];
+    }
+
+    /**
+     * Return the names of the markers with start<=position<=end on the given linkage group, in position order.
+     */
+    public List<String> getMarkersBetween(String linkageGroup, double start, double end) {
+        List<String> markers = new ArrayList<>();
+        LinkageGroup lg = getLinkageGroup(linkageGroup);
+        if (lg==null) return markers;
+        for (int i=lg.ceiling(start); i<lg.size && lg.positions[i]<=end; i++) {
+            markers.add(lg.markerNames[i]);
+        }
+        return markers;
+    }
+
+    /**
+     * Return the name of the nearest marker at or to the left of the given position, or null if there is none.
+     * Of several markers at the same position, the last in file order is returned.
+     */
+    public String getLeftFlankingMarker(String linkageGroup, double position) {
+        LinkageGroup lg = getLinkageGroup(linkageGroup);
+        if (lg==null) return null;
+        int rank = lg.floor(position);
+        return (rank<0) ? null : lg.markerNames[rank];
+    }
+
+    /**
+     * Return the name of the nearest marker at or to the right of the given position, or null if there is none.
+     * Of several markers at the same position, the first in file order is returned.
+     */
+    public String getRightFlankingMarker(String linkageGroup, double position) {
+        LinkageGroup lg = getLinkageGroup(linkageGroup);
+        if (lg==null) return null;
+        int rank = lg.ceiling(position);
+        return (rank==lg.size) ? null : lg.markerNames[rank];
+    }
+
+    /**
+     * Return the given linkage group with its markers sorted, or null; sorts all linkage groups after any additions.
+     */
+    LinkageGroup getLinkageGroup(String linkageGroup) {
+        if (!sorted) {
+            for (LinkageGroup lg : linkageGroups.values()) lg.sort();
+            sorted = true;
+        }
+        return linkageGroups.get(linkageGroup);
+    }
+
+}
@@ -0,0 +1,144 @@
+package org.intermine.bio.dataconversion;
+
+/**
+ * An index-based view of a dot-separated LIS identifier. The dot offsets are recorded once on construction,
+ * and each component is returned as a substring without regex compilation or String[] allocation.
+ *
+ * Field numbering and counting are identical to identifier.split("\\."), including the removal of trailing empty fields.
+ *
+ * 0     1      2    3
+ * gensp.strain.assy.secondaryIdentifier
+ * 0     1      2    3    4
+ * gensp.strain.assy.anno.secondaryIdentifier
+ *
+ * @author Sam Hokin
+ */
+public class LisIdentifier {
+
+    final String identifier;
+    final int[] starts; // start offset of each field
+    final int[] ends;   // end offset (exclusive) of each field
+    final int fieldCount;
+
+    /**
+     * @param identifier the dot-separated identifier
+     */
+    public LisIdentifier(String identifier) {
+        this.identifier = identifier;
+        int length = identifier.length();
+        int dots = 0;
+        for (int i=0; i<length; i++) {
+            if (identifier.charAt(i)=='.') dots++;
+        }
+        starts = new int[dots+1];
+        ends = new int[dots+1];
+        int field = 0;
+        starts[0] = 0;
+        for (int i=0; i<length; i++) {
+            if (identifier.charAt(i)=='.') {
+                ends[field] = i;
+                field++;
+                starts[field] = i + 1;
+            }
+        }
+        ends[field] = length;
+        // split() drops trailing empty fields, but keeps a single empty field for an empty string
+        int count = dots + 1;
+        while (count>1 && starts[count-1]==ends[count-1]) count--;
+        if (count==1 && length>0 && starts[0]==ends[0]) count = 0;
+        fieldCount = count;
+    }
+
+    /**
+     * @return the identifier this view was created from
+     */
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * @return the number of fields, as in identifier.split("\\.").length
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * @return field i, as in identifier.split("\\.")[i]
+     * @throws ArrayIndexOutOfBoundsException if there are fewer than i+1 fields
+     */
+    public String getField(int i) {
+        checkField(i);
+        return identifier.substring(starts[i], ends[i]);
+    }
+
+    /**
+     * @return true if field i exists and equals the given string, without allocating a substring
+     */
+    public boolean fieldEquals(int i, String s) {
+        if (i<0 || i>=fieldCount || s==null) return false;
+        int length = ends[i] - starts[i];
+        return length==s.length() && identifier.regionMatches(starts[i], s, 0, length);
+    }
+
+    /**
+     * @return fields i through the last, joined with dots
+     * @throws ArrayIndexOutOfBoundsException if there are fewer than i+1 fields
+     */
+    public String getFieldsFrom(int i) {
+        checkField(i);
+        return identifier.substring(starts[i], ends[fieldCount-1]);
+    }
+
+    /**
+     * @return the first n fields joined with dots
+     * @throws ArrayIndexOutOfBoundsException if there are fewer than n fields
+     */
+    public String getFieldsTo(int n) {
+        checkField(n-1);
+        return identifier.substring(0, ends[n-1]);
+    }
+
+    /**
+     * Return the secondaryIdentifier: everything from field 4 for an annotation feature, or from field 3 for an assembly feature;
+     * null if there aren't enough fields.
+     *
+     * @param isAnnotationFeature true if this is an annotation feature with five or more dot-separated parts
+     */
+    public String getSecondaryIdentifier(boolean isAnnotationFeature) {
+        if (isAnnotationFeature && fieldCount>=5) {
+            return getFieldsFrom(4);
+        } else if (!isAnnotationFeature && fieldCount>=4) {
+            return getFieldsFrom(3);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Return the assembly version of a feature identifier: field 2 of an assembly or annotation feature,
+     * which has four or five fields; null otherwise.
+     */
+    public String getAssemblyVersion() {
+        if (fieldCount==4 || fieldCount==5) {
+            return getField(2);
+        } else {
+            return null;
+        }
+    }
+
+    void checkField(int i) {
+        if (i<0 || i>=fieldCount) {
+            throw new ArrayIndexOutOfBoundsException("Identifier "+identifier+" has no field "+i);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return identifier;
+    }
+
+}
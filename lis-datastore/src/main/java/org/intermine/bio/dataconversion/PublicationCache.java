@@ -0,0 +1,134 @@
+package org.intermine.bio.dataconversion;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import org.xml.sax.SAXException;
+
+/**
+ * An on-disk cache of PublicationRecords keyed by DOI, so that mine rebuilds don't query CrossRef and PubMed
+ * for the same DOIs over and over.
+ *
+ * Each DOI is stored as a JSON file named by the MD5 of the lower-cased DOI (DOIs are case-insensitive).
+ * Entries older than the TTL are refetched; when there are more than maxEntries files the least recently written are deleted.
+ * In offline mode only the cache is consulted, regardless of TTL, and a miss returns null.
+ *
+ * Set in project.xml on the datastore sources:
+ *   publicationCacheDir          the cache directory; no caching if unset
+ *   publicationCacheTtlDays      days before an entry is refetched (default 30)
+ *   publicationCacheMaxEntries   maximum number of cached DOIs (default 10000)
+ *   publicationOffline           "true" to serve only from the cache
+ *
+ * @author Sam Hokin
+ */
+public class PublicationCache {
+
+    public static final int DEFAULT_TTL_DAYS = 30;
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    static final long MILLIS_PER_DAY = 24L*60*60*1000;
+
+    File dir;
+    long ttlMillis;
+    int maxEntries;
+    boolean offline;
+
+    /**
+     * @param dir the cache directory, created if necessary; null for no caching
+     * @param ttlDays the number of days before a cached entry is refetched
+     * @param maxEntries the maximum number of cached entries
+     * @param offline if true, only serve from the cache
+     * @throws RuntimeException if offline without a cache directory, or the directory can't be created
+     */
+    public PublicationCache(File dir, int ttlDays, int maxEntries, boolean offline) {
+        if (offline && dir==null) {
+            throw new RuntimeException("publicationOffline requires publicationCacheDir to be set.");
+        }
+        if (dir!=null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new RuntimeException("Could not create publication cache directory "+dir);
+        }
+        this.dir = dir;
+        this.ttlMillis = ttlDays*MILLIS_PER_DAY;
+        this.maxEntries = maxEntries;
+        this.offline = offline;
+    }
+
+    /**
+     * Return the PublicationRecord for the given DOI from the cache if present and fresh, else from CrossRef and PubMed,
+     * caching the result. Returns null if offline and the DOI isn't cached.
+     *
+     * @param doi the publication's DOI
+     */
+    public PublicationRecord get(String doi) throws IOException, ParseException, ParserConfigurationException, SAXException {
+        if (dir==null) return PublicationRecord.fetch(doi);
+        File file = getFile(doi);
+        if (file.exists() && (offline || System.currentTimeMillis()-file.lastModified()<ttlMillis)) {
+            try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                return PublicationRecord.fromJSON((JSONObject) new JSONParser().parse(reader));
+            }
+        }
+        if (offline) {
+            System.err.println("## Publication "+doi+" is not in the publication cache "+dir+" and we're offline.");
+            return null;
+        }
+        PublicationRecord record = PublicationRecord.fetch(doi);
+        put(file, record);
+        return record;
+    }
+
+    /**
+     * Write the record to a temp file and move it into place, so concurrent sources never read a partial entry.
+     */
+    void put(File file, PublicationRecord record) throws IOException {
+        File temp = File.createTempFile(file.getName(), ".tmp", dir);
+        try (Writer writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(record.toJSON().toJSONString());
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        evict();
+    }
+
+    /**
+     * Delete the least recently written entries beyond maxEntries.
+     */
+    void evict() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".json"));
+        if (files==null || files.length<=maxEntries) return;
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (int i=0; i<files.length-maxEntries; i++) {
+            files[i].delete();
+        }
+    }
+
+    /**
+     * @return the cache file for the given DOI
+     */
+    File getFile(String doi) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            byte[] digest = md.digest(doi.trim().toLowerCase().getBytes(StandardCharsets.UTF_8));
+            return new File(dir, FastaRecordReader.toHex(digest)+".json");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+}
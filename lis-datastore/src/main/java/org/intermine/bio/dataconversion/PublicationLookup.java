@@ -0,0 +1,129 @@
+package org.intermine.bio.dataconversion;
+
+import java.io.File;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The CrossRef and PubMed lookup of a README's publication DOI, run on a background thread so that network latency
+ * overlaps the loading of the collection's data files, and joined with await() once they're loaded.
+ *
+ * Holds the publication settings that the datastore sources accept in project.xml, which the sources pass through:
+ *   publicationCacheDir          the PublicationCache directory; no caching if unset
+ *   publicationCacheTtlDays      days before a cached entry is refetched
+ *   publicationCacheMaxEntries   maximum number of cached DOIs
+ *   publicationOffline           "true" to serve only from the cache
+ *   publicationTimeout           seconds await() waits for the lookup
+ *
+ * DatastoreFileConverter fills its Publication and Author Items from the returned PublicationRecord, and the direct
+ * loaders their Publication and Author objects.
+ *
+ * @author Sam Hokin
+ */
+public class PublicationLookup {
+
+    // seconds to wait in await() for the background lookup
+    public static final int DEFAULT_TIMEOUT = 300;
+
+    String cacheDir;
+    int cacheTtlDays = PublicationCache.DEFAULT_TTL_DAYS;
+    int cacheMaxEntries = PublicationCache.DEFAULT_MAX_ENTRIES;
+    boolean offline = false;
+    int timeout = DEFAULT_TIMEOUT;
+
+    PublicationCache cache;
+
+    // the DOI and lookup started by start() and joined by await()
+    String doi;
+    Future<PublicationRecord> future;
+
+    /**
+     * Set the PublicationCache directory.
+     */
+    public void setCacheDir(String dir) {
+        this.cacheDir = dir;
+    }
+
+    /**
+     * Set the number of days before a cached publication is refetched.
+     */
+    public void setCacheTtlDays(String days) {
+        this.cacheTtlDays = Integer.parseInt(days);
+    }
+
+    /**
+     * Set the maximum number of cached publications.
+     */
+    public void setCacheMaxEntries(String entries) {
+        this.cacheMaxEntries = Integer.parseInt(entries);
+    }
+
+    /**
+     * Set "true" to only use cached publications.
+     */
+    public void setOffline(String offline) {
+        this.offline = offline.equals("true");
+    }
+
+    /**
+     * Set the number of seconds await() waits for the lookup.
+     */
+    public void setTimeout(String seconds) {
+        this.timeout = Integer.parseInt(seconds);
+    }
+
+    /**
+     * Start the lookup of the given DOI on a background thread. Only the lookup happens off-thread.
+     *
+     * @param doi the publication's DOI
+     */
+    public void start(final String doi) {
+        final PublicationCache cache = getCache();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        this.doi = doi;
+        this.future = executor.submit(() -> cache.get(doi));
+        executor.shutdown();
+    }
+
+    /**
+     * Wait up to timeout seconds for the lookup started by start() and return its PublicationRecord,
+     * or null if no lookup is pending or the DOI wasn't found.
+     *
+     * @throws RuntimeException if the lookup failed or timed out
+     */
+    public PublicationRecord await() {
+        if (future==null) return null;
+        PublicationRecord record;
+        try {
+            record = future.get(timeout, TimeUnit.SECONDS);
+        } catch (TimeoutException ex) {
+            future.cancel(true);
+            throw new RuntimeException("Publication lookup for "+doi+" did not finish within "+timeout+" seconds.");
+        } catch (InterruptedException ex) {
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            future = null;
+        }
+        if (record==null || !record.found) return null;
+        return record;
+    }
+
+    /**
+     * Create the PublicationCache from the settings on first use.
+     */
+    PublicationCache getCache() {
+        if (cache==null) {
+            File dir = (cacheDir==null) ? null : new File(cacheDir);
+            cache = new PublicationCache(dir, cacheTtlDays, cacheMaxEntries, offline);
+        }
+        return cache;
+    }
+
+}
@@ -0,0 +1,225 @@
+package org.intermine.bio.dataconversion;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+
+import java.net.MalformedURLException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+
+import org.xml.sax.SAXException;
+
+import org.ncgr.crossref.WorksQuery;
+
+/**
+ * The publication and author data we load for a DOI, resolved from CrossRef and PubMed, and serializable to JSON
+ * so that it can be kept in a PublicationCache.
+ *
+ * A record with found=false records that CrossRef did not return an "ok" status for the DOI.
+ *
+ * @author Sam Hokin
+ */
+public class PublicationRecord {
+
+    /**
+     * An author as loaded into the IM Author class.
+     */
+    public static class AuthorRecord {
+        public String firstName;
+        public String lastName;
+        public String name;
+        public String initials;
+    }
+
+    public String queryDoi; // the DOI we queried with, which CrossRef may return in a different case
+    public boolean found;
+    public String title;
+    public String firstAuthor;
+    public String month;
+    public String journal;
+    public String volume;
+    public String issue;
+    public String pages;
+    public String doi;
+    public int year;
+    public int pubMedId;
+    public List<AuthorRecord> authors = new ArrayList<>();
+
+    /**
+     * Query CrossRef and PubMed for the given DOI.
+     *
+     * @param doi the publication's DOI
+     * @return the resolved record, with found=false if CrossRef doesn't return an ok status
+     */
+    public static PublicationRecord fetch(String doi) throws UnsupportedEncodingException, MalformedURLException, ParseException,
+                                                             IOException, ParserConfigurationException, SAXException {
+        PublicationRecord record = new PublicationRecord();
+        record.queryDoi = doi;
+        // query CrossRef entry from DOI
+        WorksQuery wq = new WorksQuery(doi);
+        if (wq.getStatus()!=null && wq.getStatus().equals("ok")) {
+            record.found = true;
+            record.title = wq.getTitle();
+            int year = 0;
+            try { year = wq.getJournalIssueYear(); } catch (Exception ex) { }
+            if (year==0) {
+                try { year = wq.getIssuedYear(); } catch (Exception ex) { }
+            }
+            record.year = year;
+            String month = null;
+            try { month = String.valueOf(wq.getJournalIssueMonth()); } catch (Exception ex) { }
+            if (month==null) {
+                try { month = String.valueOf(wq.getIssuedMonth()); } catch (Exception ex) { }
+            }
+            record.month = month;
+            if (wq.getShortContainerTitle()!=null) {
+                record.journal = wq.getShortContainerTitle();
+            } else if (wq.getContainerTitle()!=null) {
+                record.journal = wq.getContainerTitle();
+            }
+            record.volume = wq.getVolume();
+            record.issue = wq.getIssue();
+            record.pages = wq.getPage();
+            record.doi = wq.getDOI();
+            JSONArray authorsJSON = wq.getAuthors();
+            if (authorsJSON!=null && authorsJSON.size()>0) {
+                JSONObject firstAuthorObject = (JSONObject) authorsJSON.get(0);
+                record.firstAuthor = (String) firstAuthorObject.get("family");
+                if (firstAuthorObject.get("given")!=null) record.firstAuthor += ", " + (String) firstAuthorObject.get("given");
+            }
+            // get PubMed ID from PubMed API
+            record.pubMedId = DatastoreUtils.getPubMedId(record.doi);
+            // core IM model does not contain lastAuthor
+            // if (authorsJSON.size()>1) {
+            //     JSONObject lastAuthorObject = (JSONObject) authorsJSON.get(authorsJSON.size()-1);
+            //     lastAuthor = lastAuthorObject.get("family")+", "+lastAuthorObject.get("given");
+            // }
+            if (authorsJSON!=null) {
+                for (Object authorObject : authorsJSON)  {
+                    AuthorRecord author = getAuthorRecord((JSONObject) authorObject);
+                    if (author!=null) record.authors.add(author);
+                }
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Form an AuthorRecord from a CrossRef author, or null if the family name is missing.
+     */
+    static AuthorRecord getAuthorRecord(JSONObject authorJSON) {
+        // IM Author attributes from CrossRef fields
+        String firstName = null; // there are rare occasions when firstName is missing, so we'll fill that in with a placeholder "X"
+        if (authorJSON.get("given")==null) {
+            firstName = "X";
+        } else {
+            firstName = (String) authorJSON.get("given");
+        }
+        // we require lastName, so if it's missing then bail on this author
+        if (authorJSON.get("family")==null) return null;
+        String lastName = (String) authorJSON.get("family");
+        // split out initials if present
+        // R. K. => R K
+        // R.K.  => R K
+        // Douglas R => Douglas R
+        // Douglas R. => Douglas R
+        String initials = null;
+        // deal with space
+        String[] parts = firstName.split(" ");
+        if (parts.length==2) {
+            if (parts[1].length()==1) {
+                firstName = parts[0];
+                initials = parts[1];
+            } else if (parts[1].length()==2 && parts[1].endsWith(".")) {
+                firstName = parts[0];
+                initials = parts[1].substring(0,1);
+            }
+        }
+        // pull initial out if it's an R.K. style first name (but not M.V.K.)
+        if (initials==null && firstName.length()==4 && firstName.charAt(1)=='.' && firstName.charAt(3)=='.') {
+            initials = String.valueOf(firstName.charAt(2));
+            firstName = String.valueOf(firstName.charAt(0));
+        }
+        // remove trailing period from a remaining R. style first name
+        if (firstName.length()==2 && firstName.charAt(1)=='.') {
+            firstName = String.valueOf(firstName.charAt(0));
+        }
+        AuthorRecord author = new AuthorRecord();
+        author.firstName = firstName;
+        author.lastName = lastName;
+        author.name = firstName+" "+lastName;
+        author.initials = initials;
+        return author;
+    }
+
+    /**
+     * @return this record as a JSON object
+     */
+    @SuppressWarnings("unchecked")
+    public JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        json.put("queryDoi", queryDoi);
+        json.put("found", found);
+        json.put("title", title);
+        json.put("firstAuthor", firstAuthor);
+        json.put("month", month);
+        json.put("journal", journal);
+        json.put("volume", volume);
+        json.put("issue", issue);
+        json.put("pages", pages);
+        json.put("doi", doi);
+        json.put("year", year);
+        json.put("pubMedId", pubMedId);
+        JSONArray authorsJSON = new JSONArray();
+        for (AuthorRecord author : authors) {
+            JSONObject authorJSON = new JSONObject();
+            authorJSON.put("firstName", author.firstName);
+            authorJSON.put("lastName", author.lastName);
+            authorJSON.put("name", author.name);
+            authorJSON.put("initials", author.initials);
+            authorsJSON.add(authorJSON);
+        }
+        json.put("authors", authorsJSON);
+        return json;
+    }
+
+    /**
+     * @return a record from a JSON object written by toJSON()
+     */
+    public static PublicationRecord fromJSON(JSONObject json) {
+        PublicationRecord record = new PublicationRecord();
+        record.queryDoi = (String) json.get("queryDoi");
+        record.found = Boolean.TRUE.equals(json.get("found"));
+        record.title = (String) json.get("title");
+        record.firstAuthor = (String) json.get("firstAuthor");
+        record.month = (String) json.get("month");
+        record.journal = (String) json.get("journal");
+        record.volume = (String) json.get("volume");
+        record.issue = (String) json.get("issue");
+        record.pages = (String) json.get("pages");
+        record.doi = (String) json.get("doi");
+        if (json.get("year")!=null) record.year = ((Number) json.get("year")).intValue();
+        if (json.get("pubMedId")!=null) record.pubMedId = ((Number) json.get("pubMedId")).intValue();
+        JSONArray authorsJSON = (JSONArray) json.get("authors");
+        if (authorsJSON!=null) {
+            for (Object authorObject : authorsJSON) {
+                JSONObject authorJSON = (JSONObject) authorObject;
+                AuthorRecord author = new AuthorRecord();
+                author.firstName = (String) authorJSON.get("firstName");
+                author.lastName = (String) authorJSON.get("lastName");
+                author.name = (String) authorJSON.get("name");
+                author.initials = (String) authorJSON.get("initials");
+                record.authors.add(author);
+            }
+        }
+        return record;
+    }
+
+}
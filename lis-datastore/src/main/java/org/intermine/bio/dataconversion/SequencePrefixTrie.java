@@ -0,0 +1,126 @@
+package org.intermine.bio.dataconversion;
+
+import java.util.Collection;
+
+/**
+ * Classifies sequence identifiers as Chromosome or Supercontig from the chromosome_prefix and supercontig_prefix
+ * lists in a genome README. The full prefixes gensp.strain.assy.prefix are compiled once into a character trie,
+ * so a lookup is a single walk along the identifier with no String concatenation or allocation.
+ *
+ * In classify() a Chromosome prefix match takes precedence over a Supercontig prefix match, as in the callers' isChromosome() then isSupercontig() checks.
+ *
+ * @author Sam Hokin
+ */
+public class SequencePrefixTrie {
+
+    public static final String CHROMOSOME = "Chromosome";
+    public static final String SUPERCONTIG = "Supercontig";
+
+    static final char[] NO_KEYS = new char[0];
+    static final Node[] NO_CHILDREN = new Node[0];
+
+    /**
+     * A trie node; children are kept in parallel arrays since there are only a handful per node.
+     */
+    static class Node {
+        char[] keys = NO_KEYS;
+        Node[] children = NO_CHILDREN;
+        boolean chromosome;
+        boolean supercontig;
+
+        Node getChild(char c) {
+            for (int i=0; i<keys.length; i++) {
+                if (keys[i]==c) return children[i];
+            }
+            return null;
+        }
+
+        Node addChild(char c) {
+            Node child = getChild(c);
+            if (child==null) {
+                int n = keys.length;
+                char[] newKeys = new char[n+1];
+                Node[] newChildren = new Node[n+1];
+                System.arraycopy(keys, 0, newKeys, 0, n);
+                System.arraycopy(children, 0, newChildren, 0, n);
+                child = new Node();
+                newKeys[n] = c;
+                newChildren[n] = child;
+                keys = newKeys;
+                children = newChildren;
+            }
+            return child;
+        }
+    }
+
+    final Node root = new Node();
+
+    /**
+     * Compile the README prefixes for the given assembly.
+     *
+     * @param assemblyPrefix the gensp.strain.assy prefix common to every sequence in the assembly
+     * @param chromosomePrefixes the chromosome_prefix values, e.g. "chr"
+     * @param supercontigPrefixes the supercontig_prefix values, e.g. "scaffold"
+     */
+    public SequencePrefixTrie(String assemblyPrefix, Collection<String> chromosomePrefixes, Collection<String> supercontigPrefixes) {
+        for (String prefix : chromosomePrefixes) {
+            add(assemblyPrefix+"."+prefix).chromosome = true;
+        }
+        for (String prefix : supercontigPrefixes) {
+            add(assemblyPrefix+"."+prefix).supercontig = true;
+        }
+    }
+
+    Node add(String prefix) {
+        Node node = root;
+        for (int i=0; i<prefix.length(); i++) {
+            node = node.addChild(prefix.charAt(i));
+        }
+        return node;
+    }
+
+    /**
+     * Return CHROMOSOME if the identifier starts with a chromosome prefix, else SUPERCONTIG if it starts with a
+     * supercontig prefix, else null.
+     */
+    public String classify(String identifier) {
+        boolean supercontig = false;
+        Node node = root;
+        int i = 0;
+        int length = identifier.length();
+        while (node!=null) {
+            if (node.chromosome) return CHROMOSOME;
+            if (node.supercontig) supercontig = true;
+            if (i==length) break;
+            node = node.getChild(identifier.charAt(i++));
+        }
+        return supercontig ? SUPERCONTIG : null;
+    }
+
+    /**
+     * Return true if the identifier starts with one of the chromosome prefixes.
+     */
+    public boolean isChromosome(String identifier) {
+        return matches(identifier, true);
+    }
+
+    /**
+     * Return true if the identifier starts with one of the supercontig prefixes.
+     */
+    public boolean isSupercontig(String identifier) {
+        return matches(identifier, false);
+    }
+
+    boolean matches(String identifier, boolean chromosome) {
+        Node node = root;
+        int i = 0;
+        int length = identifier.length();
+        while (node!=null) {
+            if (chromosome ? node.chromosome : node.supercontig) return true;
+            if (i==length) break;
+            node = node.getChild(identifier.charAt(i++));
+        }
+        return false;
+    }
+
+}
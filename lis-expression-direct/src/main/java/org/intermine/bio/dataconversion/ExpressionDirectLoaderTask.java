@@ -0,0 +1,501 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2021 NCGR
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ */
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.apache.tools.ant.BuildException;
+
+import org.intermine.metadata.TypeUtil;
+import org.intermine.model.InterMineObject;
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.task.FileDirectDataLoaderTask;
+
+import org.intermine.model.bio.Author;
+import org.intermine.model.bio.DataSet;
+import org.intermine.model.bio.DataSource;
+import org.intermine.model.bio.ExpressionSample;
+import org.intermine.model.bio.ExpressionSource;
+import org.intermine.model.bio.ExpressionValue;
+import org.intermine.model.bio.Gene;
+import org.intermine.model.bio.OntologyAnnotation;
+import org.intermine.model.bio.OntologyTerm;
+import org.intermine.model.bio.Organism;
+import org.intermine.model.bio.Publication;
+import org.intermine.model.bio.Strain;
+
+import org.ncgr.datastore.Readme;
+import org.ncgr.datastore.validation.ExpressionCollectionValidator;
+import org.ncgr.zip.GZIPBufferedReader;
+
+/**
+ * A direct loader for a datastore expression collection, storing ExpressionSource, ExpressionSample and ExpressionValue objects
+ * straight to the ObjectStore rather than through Items, since expression values never merge with anything else.
+ * Reads the same files as ExpressionFileConverter, and the README must be processed first.
+ *
+ * expression/G19833.gnm1.ann1.expr.4ZDQ/
+ * ├── phavu.G19833.gnm1.ann1.expr.4ZDQ.obo.tsv.gz
+ * ├── phavu.G19833.gnm1.ann1.expr.4ZDQ.samples.tsv.gz
+ * ├── phavu.G19833.gnm1.ann1.expr.4ZDQ.values.tsv.gz
+ * └── README.G19833.gnm1.ann1.expr.4ZDQ.yml
+ *
+ * @author Sam Hokin
+ */
+public class ExpressionDirectLoaderTask extends FileDirectDataLoaderTask {
+    private static final Logger LOG = Logger.getLogger(ExpressionDirectLoaderTask.class);
+
+    // project.xml setters
+    String dataSourceName, dataSourceUrl, dataSourceDescription;
+    String dataSetUrl, dataSetLicence;
+    int rowBatchSize = ExpressionValuesReader.DEFAULT_ROW_BATCH_SIZE;
+    int threads = 1;
+
+    // the CrossRef/PubMed lookup started in processReadme() and joined in process(), settings can be set in project.xml
+    PublicationLookup publicationLookup = new PublicationLookup();
+
+    Readme readme;
+
+    // collection objects
+    DataSource dataSource;
+    DataSet dataSet;
+    Organism organism;
+    Strain strain;
+    Publication publication;
+    List<Author> authors = new ArrayList<>();
+    ExpressionSource expressionSource;
+
+    // Maps
+    Map<String,ExpressionSample> samples = new HashMap<>();
+    Map<String,Gene> genes = new HashMap<>();
+    Map<String,OntologyTerm> ontologyTerms = new HashMap<>();
+
+    // validate the collection first by storing a flag
+    boolean collectionValidated = false;
+
+    /**
+     * dataSetUrl must be set in project.xml
+     */
+    public void setDataSetUrl(String url) {
+        this.dataSetUrl = url;
+    }
+
+    /**
+     * dataSetLicence can be set in project.xml
+     */
+    public void setDataSetLicence(String licence) {
+        this.dataSetLicence = licence;
+    }
+
+    /**
+     * dataSourceName can be set in project.xml
+     */
+    public void setDataSourceName(String name) {
+        this.dataSourceName = name;
+    }
+
+    /**
+     * dataSourceUrl can be set in project.xml
+     */
+    public void setDataSourceUrl(String url) {
+        this.dataSourceUrl = url;
+    }
+
+    /**
+     * dataSourceDescription can be set in project.xml
+     */
+    public void setDataSourceDescription(String description) {
+        this.dataSourceDescription = description;
+    }
+
+    /**
+     * rowBatchSize can be set in project.xml: the number of values file rows parsed and stored at a time
+     */
+    public void setRowBatchSize(String rowBatchSize) {
+        this.rowBatchSize = Integer.parseInt(rowBatchSize);
+        if (this.rowBatchSize<1) {
+            throw new BuildException("rowBatchSize must be at least 1.");
+        }
+    }
+
+    /**
+     * threads can be set in project.xml to parse values file blocks on a pool of worker threads; 1 parses them serially
+     */
+    public void setThreads(String threads) {
+        this.threads = Integer.parseInt(threads);
+        if (this.threads<1) {
+            throw new BuildException("threads must be at least 1.");
+        }
+    }
+
+    /**
+     * publicationCacheDir can be set in project.xml to cache CrossRef/PubMed lookups on disk
+     */
+    public void setPublicationCacheDir(String dir) {
+        publicationLookup.setCacheDir(dir);
+    }
+
+    /**
+     * publicationCacheTtlDays can be set in project.xml; cached publications older than this are refetched
+     */
+    public void setPublicationCacheTtlDays(String days) {
+        publicationLookup.setCacheTtlDays(days);
+    }
+
+    /**
+     * publicationCacheMaxEntries can be set in project.xml to limit the number of cached publications
+     */
+    public void setPublicationCacheMaxEntries(String entries) {
+        publicationLookup.setCacheMaxEntries(entries);
+    }
+
+    /**
+     * publicationOffline can be set true in project.xml to only use cached publications
+     */
+    public void setPublicationOffline(String offline) {
+        publicationLookup.setOffline(offline);
+    }
+
+    /**
+     * publicationTimeout can be set in project.xml: seconds to wait after the files are loaded for the publication lookup
+     */
+    public void setPublicationTimeout(String seconds) {
+        publicationLookup.setTimeout(seconds);
+    }
+
+    /**
+     * Process the files, then store the collection objects.
+     */
+    @Override
+    public void process() {
+        // process files, which stores the expression values directly
+        super.process();
+        if (readme==null) {
+            throw new BuildException("README not read. Aborting.");
+        }
+        try {
+            // wait for the publication lookup started in processReadme()
+            populatePublication();
+            // store collection objects
+            getDirectDataLoader().store(dataSource);
+            getDirectDataLoader().store(dataSet);
+            getDirectDataLoader().store(organism);
+            getDirectDataLoader().store(strain);
+            if (publication!=null) getDirectDataLoader().store(publication);
+            for (Author author : authors) {
+                getDirectDataLoader().store(author);
+            }
+            getDirectDataLoader().store(expressionSource);
+            for (ExpressionSample sample : samples.values()) {
+                sample.setSource(expressionSource);
+                addDataSet(sample);
+                getDirectDataLoader().store(sample);
+            }
+            for (Gene gene : genes.values()) {
+                gene.setOrganism(organism);
+                gene.setStrain(strain);
+                gene.addDataSets(dataSet);
+                getDirectDataLoader().store(gene);
+            }
+            for (OntologyTerm ontologyTerm : ontologyTerms.values()) {
+                getDirectDataLoader().store(ontologyTerm);
+            }
+        } catch (ObjectStoreException ex) {
+            throw new BuildException("Failed to store object", ex);
+        }
+    }
+
+    /**
+     * Be sure to close the data loader so the last batch gets stored. only needed for tests
+     * since the data loading task usually does that for the live builds.
+     * @throws ObjectStoreException if we can't store to db
+     */
+    public void close() throws ObjectStoreException {
+        getDirectDataLoader().close();
+    }
+
+    /**
+     * @throws BuildException if an ObjectStore method fails
+     */
+    @Override
+    public void execute() {
+        // don't configure dynamic attributes if this is a unit test!
+        if (getProject()!=null) {
+            configureDynamicAttributes(this);
+        }
+        // this will call processFile() for each file
+        super.execute();
+    }
+
+    /**
+     * Handles each file.
+     *
+     * @param file the File to process.
+     * @throws BuildException if there is a problem
+     */
+    @Override
+    public void processFile(File file) throws BuildException {
+        if (!collectionValidated) {
+            ExpressionCollectionValidator validator = new ExpressionCollectionValidator(file.getParent());
+            validator.validate();
+            if (!validator.isValid()) {
+                throw new BuildException("Collection "+file.getParent()+" does not pass validation.");
+            }
+            collectionValidated = true;
+        }
+        if (!file.getName().startsWith("README") && readme==null) {
+            throw new BuildException("README missing or not read before "+file.getName()+". Add to includes or switch order in project.xml.");
+        }
+        try {
+            if (file.getName().startsWith("README")) {
+                System.out.println("## Processing "+file.getName());
+                processReadme(file);
+            } else if (file.getName().endsWith("samples.tsv.gz")) {
+                System.out.println("## Processing "+file.getName());
+                processSamplesFile(file);
+            } else if (file.getName().endsWith("values.tsv.gz")) {
+                System.out.println("## Processing "+file.getName());
+                processValuesFile(file);
+            } else if (file.getName().endsWith("obo.tsv.gz")) {
+                System.out.println("## Processing "+file.getName());
+                processOboFile(file);
+            } else {
+                System.out.println(" x skipping "+file.getName());
+            }
+        } catch (IOException ex) {
+            throw new BuildException(ex);
+        } catch (ObjectStoreException ex) {
+            throw new BuildException(ex);
+        }
+    }
+
+    /**
+     * Process the README for the collection objects and the ExpressionSource, with the same checks and
+     * ExpressionSource attributes as ExpressionFileConverter.
+     */
+    void processReadme(File file) throws IOException, ObjectStoreException {
+        readme = Readme.parse(file);
+        DatastoreFileConverter.checkReadme(readme);
+        Map<String,String> expressionSourceAttributes = DatastoreUtils.getExpressionSourceAttributes(readme);
+        if (dataSetUrl==null) {
+            throw new BuildException("dataSetUrl must be set in project.xml.");
+        }
+        // DataSource
+        dataSource = getDirectDataLoader().createObject(DataSource.class);
+        dataSource.setName(dataSourceName!=null ? dataSourceName : DatastoreFileConverter.DEFAULT_DATASOURCE_NAME);
+        dataSource.setUrl(dataSourceUrl!=null ? dataSourceUrl : DatastoreFileConverter.DEFAULT_DATASOURCE_URL);
+        dataSource.setDescription(dataSourceDescription!=null ? dataSourceDescription : DatastoreFileConverter.DEFAULT_DATASOURCE_DESCRIPTION);
+        // Publication - optional; the object is needed now for references, its attributes and authors are filled in by process()
+        if (readme.publication_doi!=null) {
+            publication = getDirectDataLoader().createObject(Publication.class);
+            publicationLookup.start(readme.publication_doi);
+        }
+        // DataSet
+        dataSet = getDirectDataLoader().createObject(DataSet.class);
+        dataSet.setDataSource(dataSource);
+        dataSet.setName(readme.identifier);
+        dataSet.setSynopsis(readme.synopsis);
+        dataSet.setDescription(readme.description);
+        dataSet.setUrl(dataSetUrl);
+        dataSet.setLicence(dataSetLicence!=null ? dataSetLicence : DatastoreFileConverter.DEFAULT_DATASET_LICENCE);
+        if (publication!=null) dataSet.setPublication(publication);
+        String version = DatastoreFileConverter.getDataSetVersion(readme.identifier);
+        if (version!=null) dataSet.setVersion(version);
+        // Organism
+        organism = getDirectDataLoader().createObject(Organism.class);
+        organism.setTaxonId(String.valueOf(readme.taxid));
+        organism.addDataSets(dataSet);
+        // Strain
+        String strainIdentifier = DatastoreUtils.extractStrainIdentifierFromCollection(readme.identifier);
+        if (strainIdentifier==null) {
+            throw new BuildException("ERROR: could not extract strain identifier from "+readme.identifier+".");
+        }
+        strain = getDirectDataLoader().createObject(Strain.class);
+        strain.setIdentifier(strainIdentifier);
+        strain.setOrganism(organism);
+        strain.addDataSets(dataSet);
+        // ExpressionSource
+        expressionSource = getDirectDataLoader().createObject(ExpressionSource.class);
+        setAttributes(expressionSource, expressionSourceAttributes);
+        expressionSource.setOrganism(organism);
+        expressionSource.setStrain(strain);
+        if (publication!=null) expressionSource.addPublications(publication);
+        addDataSet(expressionSource);
+    }
+
+    /**
+     * Process the file which describes the samples, see ExpressionSamplesReader.
+     */
+    void processSamplesFile(File file) throws IOException, ObjectStoreException {
+        ExpressionSamplesReader samplesReader = new ExpressionSamplesReader(GZIPBufferedReader.getReader(file));
+        Map<String,String> attributes = null;
+        while ((attributes=samplesReader.next())!=null) {
+            ExpressionSample sample = getSample(attributes.get("primaryIdentifier"));
+            setAttributes(sample, attributes);
+        }
+        samplesReader.close();
+    }
+
+    /**
+     * Process a gene expression file in blocks of rowBatchSize rows, storing each ExpressionValue as it's created.
+     * With threads>1 the blocks are parsed in parallel; objects are only created and stored on this thread since
+     * the direct data loader is not thread-safe. Reports rows per second when done.
+     */
+    void processValuesFile(File file) throws IOException, ObjectStoreException {
+        long startTime = System.currentTimeMillis();
+        ExpressionValuesReader valuesReader = new ExpressionValuesReader(GZIPBufferedReader.getReader(file), threads);
+        // header line gives samples in order
+        String[] sampleIds = valuesReader.getSampleIds();
+        ExpressionSample[] sampleObjects = new ExpressionSample[sampleIds.length];
+        for (int i=0; i<sampleIds.length; i++) {
+            sampleObjects[i] = getSample(sampleIds[i]);
+        }
+        long rowCount = 0;
+        long valueCount = 0;
+        ExpressionValuesBlock block = null;
+        try {
+            while ((block=valuesReader.nextBlock(rowBatchSize))!=null) {
+                for (int row=0; row<block.getRowCount(); row++) {
+                    Gene gene = getGene(block.getGeneId(row));
+                    for (int i=0; i<block.getCellCount(row); i++) {
+                        ExpressionValue expressionValue = getDirectDataLoader().createObject(ExpressionValue.class);
+                        expressionValue.setValue(block.getValue(row, i));
+                        expressionValue.setFeature(gene);
+                        expressionValue.setSample(sampleObjects[i]);
+                        getDirectDataLoader().store(expressionValue);
+                    }
+                    valueCount += block.getCellCount(row);
+                }
+                rowCount += block.getRowCount();
+            }
+        } finally {
+            valuesReader.close();
+        }
+        double seconds = (System.currentTimeMillis()-startTime)/1000.0;
+        LOG.info("Loaded "+rowCount+" rows and "+valueCount+" expression values in "+seconds+" s ("+
+                 Math.round(rowCount/Math.max(seconds, 0.001))+" rows/s).");
+        System.out.println("## Loaded "+rowCount+" rows at "+Math.round(rowCount/Math.max(seconds, 0.001))+" rows/s.");
+    }
+
+    /**
+     * Process a file relating samples to ontology terms, see ExpressionOboReader.
+     */
+    void processOboFile(File file) throws IOException, ObjectStoreException {
+        ExpressionOboReader oboReader = new ExpressionOboReader(GZIPBufferedReader.getReader(file));
+        String[] pair = null;
+        while ((pair=oboReader.next())!=null) {
+            OntologyAnnotation ontologyAnnotation = getDirectDataLoader().createObject(OntologyAnnotation.class);
+            ontologyAnnotation.setSubject(getSample(pair[0]));
+            ontologyAnnotation.setOntologyTerm(getOntologyTerm(pair[1]));
+            ontologyAnnotation.addDataSets(dataSet);
+            getDirectDataLoader().store(ontologyAnnotation);
+        }
+        oboReader.close();
+    }
+
+    /**
+     * Get or create an ExpressionSample.
+     */
+    ExpressionSample getSample(String id) throws ObjectStoreException {
+        ExpressionSample sample = samples.get(id);
+        if (sample==null) {
+            sample = getDirectDataLoader().createObject(ExpressionSample.class);
+            sample.setPrimaryIdentifier(id);
+            samples.put(id, sample);
+        }
+        return sample;
+    }
+
+    /**
+     * Get or create an OntologyTerm.
+     */
+    OntologyTerm getOntologyTerm(String id) throws ObjectStoreException {
+        OntologyTerm ontologyTerm = ontologyTerms.get(id);
+        if (ontologyTerm==null) {
+            ontologyTerm = getDirectDataLoader().createObject(OntologyTerm.class);
+            ontologyTerm.setIdentifier(id);
+            ontologyTerms.put(id, ontologyTerm);
+        }
+        return ontologyTerm;
+    }
+
+    /**
+     * Get or create a Gene.
+     */
+    Gene getGene(String id) throws ObjectStoreException {
+        Gene gene = genes.get(id);
+        if (gene==null) {
+            gene = getDirectDataLoader().createObject(Gene.class);
+            gene.setPrimaryIdentifier(id);
+            genes.put(id, gene);
+        }
+        return gene;
+    }
+
+    /**
+     * Set an object's attributes from a map of attribute name to value as returned by the readers shared with ExpressionFileConverter.
+     */
+    void setAttributes(InterMineObject object, Map<String,String> attributes) {
+        for (String name : attributes.keySet()) {
+            object.setFieldValue(name, TypeUtil.stringToObject(object.getFieldType(name), attributes.get(name)));
+        }
+    }
+
+    /**
+     * Add the DataSet to an object's dataSets collection if it has one, as the BioStoreHook does for the converter.
+     */
+    void addDataSet(InterMineObject object) {
+        try {
+            object.getFieldType("dataSets");
+        } catch (IllegalArgumentException ex) {
+            return;
+        }
+        object.addCollectionElement("dataSets", dataSet);
+    }
+
+    /**
+     * Wait for the publication lookup started in processReadme(), then populate the instance Publication and authors from it.
+     * Does nothing if the DOI wasn't found.
+     *
+     * @throws RuntimeException if the lookup failed or timed out
+     */
+    void populatePublication() throws ObjectStoreException {
+        PublicationRecord record = publicationLookup.await();
+        if (record==null) return;
+        if (record.title!=null) publication.setTitle(record.title);
+        if (record.firstAuthor!=null) publication.setFirstAuthor(record.firstAuthor);
+        if (record.month!=null && !record.month.equals("0")) publication.setMonth(record.month);
+        if (record.journal!=null) publication.setJournal(record.journal);
+        if (record.volume!=null) publication.setVolume(record.volume);
+        if (record.issue!=null) publication.setIssue(record.issue);
+        if (record.pages!=null) publication.setPages(record.pages);
+        if (record.doi!=null) publication.setDoi(record.doi);
+        if (record.year>0) publication.setYear(record.year);
+        if (record.pubMedId>0) publication.setPubMedId(String.valueOf(record.pubMedId));
+        // core IM model does not contain lastAuthor
+        // populate publication.authors
+        for (PublicationRecord.AuthorRecord authorRecord : record.authors) {
+            Author author = getDirectDataLoader().createObject(Author.class);
+            author.setFirstName(authorRecord.firstName);
+            author.setLastName(authorRecord.lastName);
+            author.setName(authorRecord.name);
+            if (authorRecord.initials!=null) author.setInitials(authorRecord.initials);
+            author.addPublications(publication);
+            authors.add(author);
+        }
+    }
+
+}
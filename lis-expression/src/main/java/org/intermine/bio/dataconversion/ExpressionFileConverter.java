@@ -1,6 +1,5 @@
 package org.intermine.bio.dataconversion;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.Reader;
@@ -40,7 +39,6 @@ public class ExpressionFileConverter extends DatastoreFileConverter {
     Item expressionSource;
 
     // Lists
-    List<Item> expressionValues = new ArrayList<>();
     List<Item> ontologyAnnotations = new ArrayList<>();
 
     // Maps
@@ -51,6 +49,10 @@ public class ExpressionFileConverter extends DatastoreFileConverter {
     // validate the collection first by storing a flag
     boolean collectionValidated = false;
 
+    // can be set in project.xml
+    int rowBatchSize = ExpressionValuesReader.DEFAULT_ROW_BATCH_SIZE;
+    int threads = 1;
+
     /**
      * Constructor.
      *
@@ -62,6 +64,26 @@ public class ExpressionFileConverter extends DatastoreFileConverter {
         super(writer, model);
     }
 
+    /**
+     * rowBatchSize can be set in project.xml: the number of values file rows whose ExpressionValues are created and stored together
+     */
+    public void setRowBatchSize(String rowBatchSize) {
+        this.rowBatchSize = Integer.parseInt(rowBatchSize);
+        if (this.rowBatchSize<1) {
+            throw new RuntimeException("rowBatchSize must be at least 1.");
+        }
+    }
+
+    /**
+     * threads can be set in project.xml to parse values file blocks on a pool of worker threads; 1 parses them serially
+     */
+    public void setThreads(String threads) {
+        this.threads = Integer.parseInt(threads);
+        if (this.threads<1) {
+            throw new RuntimeException("threads must be at least 1.");
+        }
+    }
+
     /**
      * Called for each file found.
      *
@@ -79,22 +101,14 @@ public class ExpressionFileConverter extends DatastoreFileConverter {
 	if (getCurrentFile().getName().startsWith("README")) {
             processReadme(reader);
             setStrain();
-            // check required stuff for expression
-            if (readme.expression_unit==null) {
-                throw new RuntimeException("ERROR: a required field is missing from expression README "+getCurrentFile().getName()+": "+
-                                           "Required fields are: expression_unit");
-            }
             // ExpressionSource
             expressionSource = createItem("ExpressionSource");
-            expressionSource.setAttribute("primaryIdentifier", readme.identifier);
-            expressionSource.setAttribute("synopsis", readme.synopsis);
-            expressionSource.setAttribute("description", readme.description);
-            expressionSource.setAttribute("unit", readme.expression_unit);
+            Map<String,String> attributes = DatastoreUtils.getExpressionSourceAttributes(readme);
+            for (String name : attributes.keySet()) {
+                expressionSource.setAttribute(name, attributes.get(name));
+            }
             expressionSource.setReference("organism", organism);
             expressionSource.setReference("strain", strain);
-            if (readme.geoseries!=null) expressionSource.setAttribute("geoSeries", readme.geoseries);
-            if (readme.sraproject!=null) expressionSource.setAttribute("sra", readme.sraproject);
-            if (readme.bioproject!=null) expressionSource.setAttribute("bioProject", readme.bioproject);
             if (publication!=null) expressionSource.addToCollection("publications", publication);
         } else if (getCurrentFile().getName().endsWith("samples.tsv.gz")) {
             System.out.println("## Processing "+getCurrentFile().getName());
@@ -132,7 +146,6 @@ public class ExpressionFileConverter extends DatastoreFileConverter {
         store(samples.values());
         store(ontologyTerms.values());
         store(ontologyAnnotations);
-	store(expressionValues);
     }
 
     /**
@@ -143,109 +156,82 @@ public class ExpressionFileConverter extends DatastoreFileConverter {
      * #identifier  name  description  treatment  tissue  development_stage  species  genotype  replicate_group  biosample  sra_experiment
      */
     void processSamplesFile() throws IOException {
-        // map the optional header attributes to the corresponding ExpressionSample attributes
-        // description  treatment  tissue  development_stage  species  genotype  replicate_group  biosample  sra_experiment
-        HashMap<String,String> optional = new HashMap<>();
-        optional.put("description", "description");
-        optional.put("treatment", "treatment");
-        optional.put("tissue", "tissue");
-        optional.put("development_stage", "developmentStage");
-        optional.put("species", "species");
-        optional.put("genotype", "genotype");
-        optional.put("replicate_group", "replicateGroup");
-        optional.put("biosample", "bioSample");
-        optional.put("sra_experiment", "sraExperiment");
-        String[] colnames = null;
-        int num = 0;
-	BufferedReader br = GZIPBufferedReader.getReader(getCurrentFile());
-        String line = null;
-        while ((line=br.readLine())!=null) {
-            if (line.startsWith("#identifier")) {
-                // use the column header names to identify column content
-                colnames = line.split("\t");
-            } else if (line.startsWith("#") || line.trim().length()==0) {
-                // comment or blank
-                continue;
-            } else {
-                // sample data row, increment num as we go down the file
-                num++;
-                String[] parts = line.split("\t");
-                String identifier = parts[0];
-                String name = parts[1];
-                Item sample = getSample(identifier);
-                sample.setAttribute("name", name);
-                sample.setAttribute("num", String.valueOf(num));
-                // optional attributes are given by column names
-                Map<String,String> attributes = new HashMap<>();
-                for (int i=0; i<colnames.length; i++) {
-                    attributes.put(colnames[i], parts[i]);
-                }
-                for (String key : optional.keySet()) {
-                    if (attributes.get(key)!=null && attributes.get(key).trim().length()>0) {
-                        sample.setAttribute(optional.get(key), attributes.get(key));
-                    }
-                }
+        ExpressionSamplesReader samplesReader = new ExpressionSamplesReader(GZIPBufferedReader.getReader(getCurrentFile()));
+        Map<String,String> attributes = null;
+        while ((attributes=samplesReader.next())!=null) {
+            Item sample = getSample(attributes.get("primaryIdentifier"));
+            for (String name : attributes.keySet()) {
+                if (!name.equals("primaryIdentifier")) sample.setAttribute(name, attributes.get(name));
             }
         }
-	br.close();
+        samplesReader.close();
     }
 
     /**
      * Process a gene expression file. Each gene-sample entry creates an ExpressionValue.
      *
+     * The file is read in blocks of rowBatchSize rows held in primitive arrays; each block's ExpressionValues are
+     * stored as soon as they're created, so that the full gene x sample matrix of Items is never held in memory.
+     * With threads>1 the blocks are parsed in parallel, but Items are still created here in file order.
+     * The value attribute is the original text from the file.
+     *
      * Header line must start with gene_id with tab-separated sample identifiers.
-     * (If not, NumberFormatException will occur to let you know!)
      *
      * gene_id	SRR5199304	SRR5199305	SRR5199306	SRR5199307	...
      * cajca.ICPL87119.gnm1.ann1.C.cajan_00002	0	0	0	0	...
      */
     void processValuesFile() throws IOException {
-        List<Item> sampleList = new ArrayList<>();
-	BufferedReader br = GZIPBufferedReader.getReader(getCurrentFile());
-        String line = null;
-        while ((line=br.readLine())!=null) {
-            if (line.startsWith("#") || line.trim().length()==0) continue; // comment or blank
-            String[] parts = line.split("\t");
-            if (parts[0].equals("gene_id")) {
-                // header line gives samples in order so add to list
-                for (int i=1; i<parts.length; i++) {
-                    sampleList.add(getSample(parts[i]));
-                }
-            } else {
-                // a gene expression values line
-                Item gene = getGene(parts[0]);
-                for (int i=1; i<parts.length; i++) {
-                    double value = Double.parseDouble(parts[i]);
-                    Item sample = sampleList.get(i-1);
-                    Item expressionValue = createItem("ExpressionValue");
-                    expressionValue.setAttribute("value", String.valueOf(value));
-                    expressionValue.setReference("feature", gene);
-                    expressionValue.setReference("sample", sample);
-		    expressionValues.add(expressionValue);
+        // ExpressionValues are stored as we go, so the BioStoreHook must be set
+        if (readme==null) {
+            throw new RuntimeException("README must be processed before "+getCurrentFile().getName()+". Add to includes or switch order in project.xml.");
+        }
+        ExpressionValuesReader valuesReader = new ExpressionValuesReader(GZIPBufferedReader.getReader(getCurrentFile()), threads);
+        // header line gives samples in order
+        String[] sampleIds = valuesReader.getSampleIds();
+        Item[] sampleItems = new Item[sampleIds.length];
+        for (int i=0; i<sampleIds.length; i++) {
+            sampleItems[i] = getSample(sampleIds[i]);
+        }
+        List<Item> expressionValues = new ArrayList<>();
+        ExpressionValuesBlock block = null;
+        try {
+            while ((block=valuesReader.nextBlock(rowBatchSize))!=null) {
+                for (int row=0; row<block.getRowCount(); row++) {
+                    // a gene expression values line
+                    Item gene = getGene(block.getGeneId(row));
+                    for (int i=0; i<block.getCellCount(row); i++) {
+                        Item expressionValue = createItem("ExpressionValue");
+                        expressionValue.setAttribute("value", block.getText(row, i));
+                        expressionValue.setReference("feature", gene);
+                        expressionValue.setReference("sample", sampleItems[i]);
+                        expressionValues.add(expressionValue);
+                    }
                 }
+                store(expressionValues);
+                expressionValues.clear();
             }
+        } catch (ObjectStoreException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            valuesReader.close();
         }
-	br.close();
     }
 
     /**
-     * Process a file relating samples to ontology terms.
+     * Process a file relating samples to ontology terms, see ExpressionOboReader.
      */
     void processOboFile() throws IOException {
-	BufferedReader br = GZIPBufferedReader.getReader(getCurrentFile());
-        String line = null;
-        while ((line=br.readLine())!=null) {
-            if (line.startsWith("#") || line.trim().length()==0) continue; // comment or blank
-            String[] parts = line.split("\t");
-            String sampleId = parts[0];
-            String termId = parts[1];
-            Item sample = getSample(sampleId);
-            Item ontologyTerm = getOntologyTerm(termId);
+        ExpressionOboReader oboReader = new ExpressionOboReader(GZIPBufferedReader.getReader(getCurrentFile()));
+        String[] pair = null;
+        while ((pair=oboReader.next())!=null) {
+            Item sample = getSample(pair[0]);
+            Item ontologyTerm = getOntologyTerm(pair[1]);
             Item ontologyAnnotation = createItem("OntologyAnnotation");
             ontologyAnnotation.setReference("subject", sample);
             ontologyAnnotation.setReference("ontologyTerm", ontologyTerm);
             ontologyAnnotations.add(ontologyAnnotation);
         }
+        oboReader.close();
     }
 
     /**
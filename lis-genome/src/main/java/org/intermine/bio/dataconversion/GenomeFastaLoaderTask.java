@@ -14,9 +14,6 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.InputStream;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-
-import java.net.MalformedURLException;
 
 import java.util.Arrays;
 import java.util.List;
@@ -25,16 +22,16 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.NoSuchElementException;
-
-import javax.xml.parsers.ParserConfigurationException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 import org.apache.tools.ant.BuildException;
 
-import org.biojava.nbio.core.exceptions.ParserException;
-import org.biojava.nbio.core.sequence.DNASequence;
-import org.biojava.nbio.core.sequence.template.AbstractSequence;
-
 import org.intermine.metadata.Util;
 import org.intermine.model.InterMineObject;
 import org.intermine.objectstore.ObjectStoreException;
@@ -53,17 +50,9 @@ import org.intermine.model.bio.Sequence;
 import org.intermine.model.bio.SequenceFeature;
 import org.intermine.model.bio.Supercontig;
 
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.JSONValue;
-import org.json.simple.parser.ParseException;
-
-import org.xml.sax.SAXException;
-
 import org.ncgr.datastore.Readme;
 import org.ncgr.datastore.validation.GenomeCollectionValidator;
-import org.ncgr.crossref.WorksQuery;
-import org.ncgr.zip.GZIPFastaReader;
+import org.ncgr.zip.GZIPBufferedReader;
 
 /**
  * A task that can read a set of FASTA files and create the corresponding Sequence objects in an ObjectStore.
@@ -79,16 +68,23 @@ public class GenomeFastaLoaderTask extends FileDirectDataLoaderTask {
 
     boolean loadHeaderDescriptions = false;
 
+    // number of worker threads hashing and parsing FASTA records; 1 processes them serially
+    int threads = 1;
+
     // project.xml setters
     String idAttribute, descriptionAttribute;
     String dataSourceName, dataSourceUrl, dataSourceDescription;
     String dataSetUrl, dataSetLicence;
 
+    // the CrossRef/PubMed lookup started in processReadme() and joined in process(), settings can be set in project.xml
+    PublicationLookup publicationLookup = new PublicationLookup();
+
     Readme readme;
     String gensp, strainIdentifier, assemblyVersion, annotationVersion;
 
     List<String> chromosomePrefixes = new ArrayList<>();
     List<String> supercontigPrefixes = new ArrayList<>();
+    SequencePrefixTrie sequencePrefixTrie; // compiled from the above on first use
     
     // collection items
     Organism organism;
@@ -115,6 +111,51 @@ public class GenomeFastaLoaderTask extends FileDirectDataLoaderTask {
 	this.dataSetLicence = licence;
     }
 
+    /**
+     * publicationCacheDir can be set in project.xml to cache CrossRef/PubMed lookups on disk
+     */
+    public void setPublicationCacheDir(String dir) {
+        publicationLookup.setCacheDir(dir);
+    }
+
+    /**
+     * publicationCacheTtlDays can be set in project.xml; cached publications older than this are refetched
+     */
+    public void setPublicationCacheTtlDays(String days) {
+        publicationLookup.setCacheTtlDays(days);
+    }
+
+    /**
+     * publicationCacheMaxEntries can be set in project.xml to limit the number of cached publications
+     */
+    public void setPublicationCacheMaxEntries(String entries) {
+        publicationLookup.setCacheMaxEntries(entries);
+    }
+
+    /**
+     * publicationOffline can be set true in project.xml to only use cached publications
+     */
+    public void setPublicationOffline(String offline) {
+        publicationLookup.setOffline(offline);
+    }
+
+    /**
+     * publicationTimeout can be set in project.xml: seconds to wait after the FASTA is loaded for the publication lookup
+     */
+    public void setPublicationTimeout(String seconds) {
+        publicationLookup.setTimeout(seconds);
+    }
+
+    /**
+     * threads can be set in project.xml to hash and parse FASTA records on a pool of worker threads
+     */
+    public void setThreads(String threads) {
+        this.threads = Integer.parseInt(threads);
+        if (this.threads<1) {
+            throw new BuildException("threads must be at least 1.");
+        }
+    }
+
     /**
      * dataSourceName can be set in project.xml
      */
@@ -147,6 +188,8 @@ public class GenomeFastaLoaderTask extends FileDirectDataLoaderTask {
         }
         // store the extra objects with direct data loader
         try {
+            // wait for the publication lookup started in processReadme()
+            populatePublication();
             // store collection items
             getDirectDataLoader().store(organism);
             getDirectDataLoader().store(strain);
@@ -240,6 +283,7 @@ public class GenomeFastaLoaderTask extends FileDirectDataLoaderTask {
                 supercontigPrefixes.add(prefix);
             }
         }
+        sequencePrefixTrie = null;
         // local vars
         gensp = readme.scientific_name_abbrev;
         strainIdentifier = DatastoreUtils.extractStrainIdentifierFromCollection(readme.identifier);
@@ -262,13 +306,9 @@ public class GenomeFastaLoaderTask extends FileDirectDataLoaderTask {
         } else {
             dataSource.setDescription(dataSourceDescription);
         }
-        // Publication
+        // Publication: the object is needed now for references; its attributes and authors are filled in by process()
         publication = getDirectDataLoader().createObject(Publication.class);
-        try {
-            populatePublication(readme.publication_doi);
-        } catch (Exception ex) {
-            throw new BuildException(ex);
-        }
+        publicationLookup.start(readme.publication_doi);
         // DataSet
         dataSet = getDirectDataLoader().createObject(DataSet.class);
         dataSet.setDataSource(dataSource);
@@ -277,11 +317,8 @@ public class GenomeFastaLoaderTask extends FileDirectDataLoaderTask {
         dataSet.setDescription(readme.description);
         dataSet.setUrl(dataSetUrl); // required in project.xml
         dataSet.setPublication(publication);
-        if (assemblyVersion!=null && annotationVersion!=null) {
-            dataSet.setVersion(assemblyVersion+"."+annotationVersion);
-        } else if (assemblyVersion!=null) {
-            dataSet.setVersion(assemblyVersion);
-        }
+        String version = DatastoreFileConverter.getDataSetVersion(readme.identifier);
+        if (version!=null) dataSet.setVersion(version);
         if (dataSetLicence==null) {
             dataSet.setLicence(DatastoreFileConverter.DEFAULT_DATASET_LICENCE);
         } else {
@@ -302,18 +339,26 @@ public class GenomeFastaLoaderTask extends FileDirectDataLoaderTask {
     }
     
     /**
-     * Process the FASTA file.
+     * Process the FASTA file one record at a time, so that only a single chromosome is held in memory;
+     * or, with threads>1, up to 2*threads chromosomes while they're hashed in parallel.
      */
     void processFasta(File file) throws BuildException {
         try {
-            LinkedHashMap<String,DNASequence> sequenceMap = GZIPFastaReader.readFastaDNASequence(file);
-            for (DNASequence sequence : sequenceMap.values()) {
-                processSequence(sequence);
+            FastaRecordReader fastaReader = new FastaRecordReader(GZIPBufferedReader.getReader(file), threads==1);
+            int count = 0;
+            if (threads==1) {
+                FastaRecord fastaRecord = null;
+                while ((fastaRecord=fastaReader.next())!=null) {
+                    processSequence(fastaRecord, getSequenceIdentifier(fastaRecord));
+                    count++;
+                }
+            } else {
+                count = processFastaInParallel(fastaReader);
+            }
+            fastaReader.close();
+            if (count==0) {
+                throw new BuildException("No FASTA sequences in: "+file);
             }
-        } catch (ParserException e) {
-            throw new BuildException("Sequence not in FASTA format or wrong alphabet for: "+file, e);
-        } catch (NoSuchElementException e) {
-            throw new BuildException("No FASTA sequences in: "+file, e);
         } catch (ObjectStoreException e) {
             throw new BuildException("ObjectStore problem while processing: "+file, e);
         } catch (IOException e) {
@@ -324,36 +369,79 @@ public class GenomeFastaLoaderTask extends FileDirectDataLoaderTask {
     }
 
     /**
-     * Create a Sequence and an object for the given BioJava Sequence.
+     * Hash and parse FASTA records on a pool of worker threads while this thread reads the file and stores the results.
+     * Results are stored in file order, and at most 2*threads records are in flight, which bounds memory.
+     * Objects are only created and stored on this thread since the direct data loader is not thread-safe.
      *
-     * @param bioJavaSequence the AbstractSequence object, either DNASequence or ProteinSequence
-     * @throws ObjectStoreException if store() fails
+     * @param fastaReader the FastaRecordReader, which should not compute MD5 checksums itself
+     * @return the number of records read
      */
-    void processSequence(AbstractSequence bioJavaSequence) throws ObjectStoreException {
-        // the sequence string and MD5
-        String sequence = bioJavaSequence.getSequenceAsString();
-        String md5checksum = Util.getMd5checksum(sequence);
-        // an InterMine Sequence
-        Sequence bioSequence = getDirectDataLoader().createObject(org.intermine.model.bio.Sequence.class);
-        bioSequence.setResidues(new PendingClob(sequence));
-        bioSequence.setLength(bioJavaSequence.getLength());
-        bioSequence.setMd5checksum(md5checksum);
-        // the feature identifier
-        String identifier = getIdentifier(bioJavaSequence);
-        // HACK: don't allow spaces or tabs in primary identifiers; set symbol=extra part
-        String symbol = null;
+    int processFastaInParallel(FastaRecordReader fastaReader) throws IOException, ObjectStoreException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Deque<FastaRecord> records = new ArrayDeque<>();
+        Deque<Future<String>> identifiers = new ArrayDeque<>();
+        int count = 0;
+        try {
+            FastaRecord fastaRecord = null;
+            while ((fastaRecord=fastaReader.next())!=null) {
+                final FastaRecord record = fastaRecord;
+                records.add(record);
+                identifiers.add(executor.submit(() -> {
+                            record.getMd5checksum();
+                            return getSequenceIdentifier(record);
+                        }));
+                count++;
+                if (records.size()>=2*threads) {
+                    processSequence(records.remove(), identifiers.remove().get());
+                }
+            }
+            while (records.size()>0) {
+                processSequence(records.remove(), identifiers.remove().get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new BuildException(ex);
+        } catch (ExecutionException ex) {
+            throw new BuildException(ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return count;
+    }
+
+    /**
+     * Return the primary identifier for a FASTA record.
+     * HACK: don't allow spaces or tabs in primary identifiers.
+     */
+    static String getSequenceIdentifier(FastaRecord fastaRecord) {
+        String identifier = fastaRecord.getIdentifier();
         String[] spaceChunks = identifier.split(" ");
         if (spaceChunks.length>1) {
             identifier = spaceChunks[0];
-            symbol = spaceChunks[1];
         }
         String[] tabChunks = identifier.split("\t");
         if (tabChunks.length>1) {
             identifier = tabChunks[0];
-            symbol = tabChunks[1];
         }
+        return identifier;
+    }
+
+    /**
+     * Create a Sequence and an object for the given FASTA record.
+     *
+     * @param fastaRecord the FastaRecord
+     * @param identifier the primary identifier from getSequenceIdentifier()
+     * @throws ObjectStoreException if store() fails
+     */
+    void processSequence(FastaRecord fastaRecord, String identifier) throws ObjectStoreException {
+        // an InterMine Sequence
+        Sequence bioSequence = getDirectDataLoader().createObject(org.intermine.model.bio.Sequence.class);
+        bioSequence.setResidues(new PendingClob(fastaRecord.getResidues()));
+        bioSequence.setLength(fastaRecord.getLength());
+        bioSequence.setMd5checksum(fastaRecord.getMd5checksum());
         // Use prefix match to identifier to set the class to Chromosome or Supercontig.
-        if (isChromosome(identifier)) {
+        String sequenceClass = getSequencePrefixTrie().classify(identifier);
+        if (SequencePrefixTrie.CHROMOSOME.equals(sequenceClass)) {
             // store Chromosome
             Class<? extends InterMineObject> imClass;
             Class<?> c;
@@ -363,13 +451,13 @@ public class GenomeFastaLoaderTask extends FileDirectDataLoaderTask {
                 Chromosome feature = (Chromosome) getDirectDataLoader().createObject(imClass);
                 feature.setPrimaryIdentifier(identifier);
                 setSecondaryIdentifier(feature, identifier, false);
-                setName(feature, bioJavaSequence, idAttribute, identifier, false);
+                setName(feature, fastaRecord.getHeader(), idAttribute, identifier, false);
                 setAssemblyVersion(feature);
                 storeSequenceFeature(feature, bioSequence);
             } catch (ClassNotFoundException ex) {
                 throw new BuildException(ex);
             }
-        } else if (isSupercontig(identifier)) {
+        } else if (SequencePrefixTrie.SUPERCONTIG.equals(sequenceClass)) {
             // store Supercontig
             Class<? extends InterMineObject> imClass;
             Class<?> c;
@@ -379,7 +467,7 @@ public class GenomeFastaLoaderTask extends FileDirectDataLoaderTask {
                 Supercontig feature = (Supercontig) getDirectDataLoader().createObject(imClass);
                 feature.setPrimaryIdentifier(identifier);
                 setSecondaryIdentifier(feature, identifier, false);
-                setName(feature, bioJavaSequence, idAttribute, identifier, false);
+                setName(feature, fastaRecord.getHeader(), idAttribute, identifier, false);
                 setAssemblyVersion(feature);
                 storeSequenceFeature(feature, bioSequence);
             } catch (ClassNotFoundException ex) {
@@ -406,31 +494,12 @@ public class GenomeFastaLoaderTask extends FileDirectDataLoaderTask {
     }
 
     /**
-     * For the given BioJava Sequence object, return an identifier to be used when creating the corresponding BioEntity.
-     * @param bioJavaSequence the Sequence
-     * @return an identifier
-     */
-    protected String getIdentifier(AbstractSequence bioJavaSequence) {
-        String identifier = null;
-        String header = bioJavaSequence.getAccession().getID();
-        String[] bits = header.split(" ");
-        if (bits[0].contains("|")) {
-            String[] subbits = bits[0].split("\\|");
-            identifier = subbits[1];
-        } else {
-            identifier = bits[0];
-        }
-        return identifier;
-    }
-
-    /**
-     * For the given BioJava Sequence object, return the description, defined as everything that follows the first space in the header.
-     * @param bioJavaSequence the Sequence
+     * For the given FASTA header, return the description, defined as everything that follows the first space.
+     * @param header the FASTA header
      * @return a description
      */
-    protected String getDescription(AbstractSequence bioJavaSequence) {
+    protected String getDescription(String header) {
         String description = null;
-        String header = bioJavaSequence.getAccession().getID();
         String[] bits = header.split(" ");
         if (bits.length>1) {
             description = bits[1];
@@ -447,12 +516,11 @@ public class GenomeFastaLoaderTask extends FileDirectDataLoaderTask {
      * 0                                                            1a                       1b                        1c     1d                   1e   1f          1g
      * lupal.Amiga.gnm1.ann0.mRNA:Lalb_Chr00c01g0403611.1 locus_tag=Lalb_Chr00c01g0403611 gn=Lalb_Chr00c01g0403611 len=96 chr=Lalb_Chr00c01 strand=1 sp=Unknown def=Putative RNA
      *
-     * @param bioJavaSequence the AbstractSequence
+     * @param header the FASTA header
      * @param field the name of the desired field, e.g. protein_id
      * @return an identifier
      */
-    static String getAttribute(AbstractSequence bioJavaSequence, String field) {
-        String header = bioJavaSequence.getAccession().getID();
+    static String getAttribute(String header, String field) {
         if (!header.contains(field)) return null;
         String[] split = header.split(" "+field+"=");
         if (split.length==1) return null;
@@ -497,9 +565,9 @@ public class GenomeFastaLoaderTask extends FileDirectDataLoaderTask {
     /**
      * Set name to idAttribute if exists, else to secondaryIdentifier from identifier.
      */
-    static void setName(BioEntity feature, AbstractSequence bioJavaSequence, String idAttribute, String identifier, boolean isAnnotationFeature) {
+    static void setName(BioEntity feature, String header, String idAttribute, String identifier, boolean isAnnotationFeature) {
         if (idAttribute!=null) {
-            String name = getAttribute(bioJavaSequence, idAttribute);
+            String name = getAttribute(header, idAttribute);
             if (name!=null) {
                 feature.setName(name);
                 return;
@@ -538,136 +606,56 @@ public class GenomeFastaLoaderTask extends FileDirectDataLoaderTask {
      * Return true if the given primaryIdentifier is for a Chromosome based on chromosome_prefix in the README.
      */
     public boolean isChromosome(String primaryIdentifier) {
-        if (chromosomePrefixes.size()>0) {
-            for (String prefix : chromosomePrefixes) {
-                if (primaryIdentifier.startsWith(gensp+"."+strainIdentifier+"."+assemblyVersion+"."+prefix)) return true;
-            }
-        }
-        return false;
+        return getSequencePrefixTrie().isChromosome(primaryIdentifier);
     }
 
     /**
      * Return true if the given primaryIdentifier is for a Supercontig based on supercontig_prefix in the README.
      */
     public boolean isSupercontig(String primaryIdentifier) {
-        if (supercontigPrefixes.size()>0) {
-            for (String prefix : supercontigPrefixes) {
-                if (primaryIdentifier.startsWith(gensp+"."+strainIdentifier+"."+assemblyVersion+"."+prefix)) return true;
-            }
+        return getSequencePrefixTrie().isSupercontig(primaryIdentifier);
+    }
+
+    /**
+     * Compile the chromosome and supercontig prefixes into a trie the first time it's needed after they've changed.
+     */
+    SequencePrefixTrie getSequencePrefixTrie() {
+        if (sequencePrefixTrie==null) {
+            sequencePrefixTrie = new SequencePrefixTrie(gensp+"."+strainIdentifier+"."+assemblyVersion, chromosomePrefixes, supercontigPrefixes);
         }
-        return false;
+        return sequencePrefixTrie;
     }
 
     /**
-     * Populate the instance Publication from CrossRef.
+     * Wait for the publication lookup started in processReadme(), then populate the instance Publication and authors from it.
+     * Does nothing if the DOI wasn't found.
      *
-     * @param doi the publication's DOI
-     */
-    void populatePublication(String doi) throws UnsupportedEncodingException, MalformedURLException, ParseException,
-                                                IOException, ParserConfigurationException, SAXException, ObjectStoreException {
-        // query CrossRef entry from DOI
-        WorksQuery wq = new WorksQuery(doi);
-        if (wq.getStatus()!=null && wq.getStatus().equals("ok")) {
-            String title = wq.getTitle();
-            int year = 0;
-            try { year = wq.getJournalIssueYear(); } catch (Exception ex) { }
-            if (year==0) {
-                try { year = wq.getIssuedYear(); } catch (Exception ex) { }
-            }
-            String month = null;
-            try { month = String.valueOf(wq.getJournalIssueMonth()); } catch (Exception ex) { }
-            if (month==null) {
-                try { month = String.valueOf(wq.getIssuedMonth()); } catch (Exception ex) { }
-            }
-            String journal = null;
-            if (wq.getShortContainerTitle()!=null) {
-                journal = wq.getShortContainerTitle();
-            } else if (wq.getContainerTitle()!=null) {
-                journal = wq.getContainerTitle();
-            }
-            String volume = wq.getVolume();
-            String issue = wq.getIssue();
-            String pages = wq.getPage();
-            doi = wq.getDOI();
-            JSONArray authorsJSON = wq.getAuthors();
-            String firstAuthor = null;
-            if (authorsJSON!=null && authorsJSON.size()>0) {
-                JSONObject firstAuthorObject = (JSONObject) authorsJSON.get(0);
-                firstAuthor = (String) firstAuthorObject.get("family");
-                if (firstAuthorObject.get("given")!=null) firstAuthor += ", " + (String) firstAuthorObject.get("given");
-            }
-            // get PubMed ID from PubMed API
-            int pubMedId = DatastoreUtils.getPubMedId(doi);
-            // core IM model does not contain lastAuthor
-            // if (authorsJSON.size()>1) {
-            //     JSONObject lastAuthorObject = (JSONObject) authorsJSON.get(authorsJSON.size()-1);
-            //     lastAuthor = lastAuthorObject.get("family")+", "+lastAuthorObject.get("given");
-            // }
-            // update publication object
-            if (title!=null) publication.setTitle(title);
-            if (firstAuthor!=null) publication.setFirstAuthor(firstAuthor);
-            if (month!=null && !month.equals("0")) publication.setMonth(month);
-            if (journal!=null) publication.setJournal(journal);
-            if (volume!=null) publication.setVolume(volume);
-            if (issue!=null) publication.setIssue(issue);
-            if (pages!=null) publication.setPages(pages);
-            if (doi!=null) publication.setDoi(doi);
-            if (year>0) publication.setYear(year);
-            if (pubMedId>0) publication.setPubMedId(String.valueOf(pubMedId));
-            // core IM model does not contain lastAuthor
-            // if (lastAuthor!=null) publication.setLastAuthor(lastAuthor);
-                
-            // populate publication.authors
-            if (authorsJSON!=null) {
-                for (Object authorObject : authorsJSON)  {
-                    JSONObject authorJSON = (JSONObject) authorObject;
-                    // IM Author attributes from CrossRef fields
-                    String firstName = null; // there are rare occasions when firstName is missing, so we'll fill that in with a placeholder "X"
-                    if (authorJSON.get("given")==null) {
-                        firstName = "X";
-                    } else {
-                        firstName = (String) authorJSON.get("given");
-                    }
-                    // we require lastName, so if it's missing then bail on this author
-                    if (authorJSON.get("family")==null) continue;
-                    String lastName = (String) authorJSON.get("family");
-                    // split out initials if present
-                    // R. K. => R K
-                    // R.K.  => R K
-                    // Douglas R => Douglas R
-                    // Douglas R. => Douglas R
-                    String initials = null;
-                    // deal with space
-                    String[] parts = firstName.split(" ");
-                    if (parts.length==2) {
-                        if (parts[1].length()==1) {
-                            firstName = parts[0];
-                            initials = parts[1];
-                        } else if (parts[1].length()==2 && parts[1].endsWith(".")) {
-                            firstName = parts[0];
-                            initials = parts[1].substring(0,1);
-                        }
-                    }
-                    // pull initial out if it's an R.K. style first name (but not M.V.K.)
-                    if (initials==null && firstName.length()==4 && firstName.charAt(1)=='.' && firstName.charAt(3)=='.') {
-                        initials = String.valueOf(firstName.charAt(2));
-                        firstName = String.valueOf(firstName.charAt(0));
-                    }
-                    // remove trailing period from a remaining R. style first name
-                    if (firstName.length()==2 && firstName.charAt(1)=='.') {
-                        firstName = String.valueOf(firstName.charAt(0));
-                    }
-                    String name = firstName+" "+lastName;
-                    Author author = getDirectDataLoader().createObject(Author.class);
-                    author.setFirstName(firstName);
-                    author.setLastName(lastName);
-                    author.setName(name);
-                    if (initials!=null) author.setInitials(initials);
-                    author.addPublications(publication);
-                    authors.add(author);
-                }
-            }
+     * @throws RuntimeException if the lookup failed or timed out
+     */
+    void populatePublication() throws ObjectStoreException {
+        PublicationRecord record = publicationLookup.await();
+        if (record==null) return;
+        if (record.title!=null) publication.setTitle(record.title);
+        if (record.firstAuthor!=null) publication.setFirstAuthor(record.firstAuthor);
+        if (record.month!=null && !record.month.equals("0")) publication.setMonth(record.month);
+        if (record.journal!=null) publication.setJournal(record.journal);
+        if (record.volume!=null) publication.setVolume(record.volume);
+        if (record.issue!=null) publication.setIssue(record.issue);
+        if (record.pages!=null) publication.setPages(record.pages);
+        if (record.doi!=null) publication.setDoi(record.doi);
+        if (record.year>0) publication.setYear(record.year);
+        if (record.pubMedId>0) publication.setPubMedId(String.valueOf(record.pubMedId));
+        // core IM model does not contain lastAuthor
+        // populate publication.authors
+        for (PublicationRecord.AuthorRecord authorRecord : record.authors) {
+            Author author = getDirectDataLoader().createObject(Author.class);
+            author.setFirstName(authorRecord.firstName);
+            author.setLastName(authorRecord.lastName);
+            author.setName(authorRecord.name);
+            if (authorRecord.initials!=null) author.setInitials(authorRecord.initials);
+            author.addPublications(publication);
+            authors.add(author);
         }
     }
-    
+
 }
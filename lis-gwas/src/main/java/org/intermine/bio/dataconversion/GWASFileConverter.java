@@ -8,6 +8,8 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.PriorityQueue;
 
 import org.apache.log4j.Logger;
 
@@ -38,11 +40,71 @@ public class GWASFileConverter extends DatastoreFileConverter {
     List<Item> gwasResults = new ArrayList<>();
     List<Item> ontologyAnnotations = new ArrayList<>();
     Map<String,Item> ontologyTerms = new HashMap<>();
-    Map<String,Item> traits = new HashMap<>();
+    Map<String,TraitRecord> traits = new HashMap<>();       // keyed by primaryIdentifier
+    Map<String,TraitRecord> traitsByName = new HashMap<>(); // keyed by name as given in the files
 
     // validate the collection first by storing a flag
     boolean collectionValidated = false;
 
+    // optional result filters, can be set in project.xml
+    double pValueCeiling = Double.NaN;  // NaN: no ceiling
+    int topResultsPerTrait = 0;         // 0: keep all results
+
+    // with topResultsPerTrait>0, the best results so far per trait, worst at the head; keyed by TraitRecord so that
+    // names merged by getTrait() share a heap
+    Map<TraitRecord,PriorityQueue<ResultRecord>> topResults = new LinkedHashMap<>();
+    long resultCount = 0;
+    long filteredCount = 0;
+
+    // reused to build GWASResult primary identifiers
+    StringBuilder identifierBuilder = new StringBuilder();
+
+    /**
+     * A Trait Item with the primary identifier prefix of its results, and its results, which are added to its
+     * gwasResults collection in close().
+     */
+    static class TraitRecord {
+        Item item;
+        String resultKeyPrefix; // collection identifier:sanitized trait name:
+        List<Item> results = new ArrayList<>();
+
+        TraitRecord(Item item, String primaryIdentifier) {
+            this.item = item;
+            this.resultKeyPrefix = primaryIdentifier + ":";
+        }
+
+        /**
+         * @return the number of results for this trait
+         */
+        int getResultCount() {
+            return results.size();
+        }
+    }
+
+    /**
+     * A GWAS result line held until close() when only the top results per trait are kept.
+     */
+    static class ResultRecord {
+        String markerName;
+        double pValue;
+        long order; // line order, to break p-value ties in favor of the first line
+
+        ResultRecord(String markerName, double pValue, long order) {
+            this.markerName = markerName;
+            this.pValue = pValue;
+            this.order = order;
+        }
+
+        /**
+         * Order by descending p-value, then descending line order, so the head of a PriorityQueue is the worst result.
+         */
+        static int compareWorstFirst(ResultRecord a, ResultRecord b) {
+            int c = Double.compare(b.pValue, a.pValue);
+            if (c!=0) return c;
+            return Long.compare(b.order, a.order);
+        }
+    }
+
     /**
      * Create a new GWASFileConverter
      * @param writer the ItemWriter to write out new items
@@ -52,6 +114,23 @@ public class GWASFileConverter extends DatastoreFileConverter {
         super(writer, model);
     }
 
+    /**
+     * pValueCeiling can be set in project.xml to skip results with a larger p-value
+     */
+    public void setPValueCeiling(String pValueCeiling) {
+        this.pValueCeiling = Double.parseDouble(pValueCeiling);
+    }
+
+    /**
+     * topResultsPerTrait can be set in project.xml to keep only the results with the smallest p-values for each trait
+     */
+    public void setTopResultsPerTrait(String topResultsPerTrait) {
+        this.topResultsPerTrait = Integer.parseInt(topResultsPerTrait);
+        if (this.topResultsPerTrait<0) {
+            throw new RuntimeException("topResultsPerTrait must not be negative.");
+        }
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -114,24 +193,36 @@ public class GWASFileConverter extends DatastoreFileConverter {
             throw new RuntimeException("README not read. Aborting.");
         }
         storeCollectionItems();
+        // create the retained top results per trait
+        createTopResults();
+        if (filteredCount>0) {
+            LOG.info("Kept "+(resultCount-filteredCount)+" of "+resultCount+" GWAS results after p-value ceiling "+pValueCeiling+
+                     " and top "+topResultsPerTrait+" per trait.");
+        }
         // add publication to Annotatables
         gwas.addToCollection("publications", publication);
         genotypingPlatform.addToCollection("publications", publication);
         for (Item gwasResult : gwasResults) gwasResult.addToCollection("publications", publication);
-        for (Item trait : traits.values()) trait.addToCollection("publications", publication);
         // associate GWAS with results (in case README not read first)
         for (Item gwasResult : gwasResults) {
             gwasResult.setReference("gwas", gwas);
         }
-        // associate GWAS with traits (in case README not read first)
-        for (Item trait : traits.values()) {
-            trait.setReference("gwas", gwas);
+        // associate GWAS and results with traits (in case README not read first)
+        List<Item> traitItems = new ArrayList<>();
+        for (TraitRecord trait : traits.values()) {
+            trait.item.addToCollection("publications", publication);
+            trait.item.setReference("gwas", gwas);
+            for (Item gwasResult : trait.results) {
+                trait.item.addToCollection("gwasResults", gwasResult);
+            }
+            LOG.info(trait.item.getAttribute("primaryIdentifier").getValue()+" has "+trait.getResultCount()+" GWAS results.");
+            traitItems.add(trait.item);
         }
         // store 'em
         store(gwas);
         store(genotypingPlatform);
         store(gwasResults);
-        store(traits.values());
+        store(traitItems);
         store(ontologyTerms.values());
         store(ontologyAnnotations);
     }
@@ -154,7 +245,7 @@ public class GWASFileConverter extends DatastoreFileConverter {
             String traitName = fields[0];
             String description = fields[1];
             // 0:Trait.name
-            Item trait = getTrait(traitName);
+            Item trait = getTrait(traitName).item;
             // 1:Trait.description (may be blank)
             if (description!=null && description.length()>0) trait.setAttribute("description", description);
         }
@@ -184,7 +275,7 @@ public class GWASFileConverter extends DatastoreFileConverter {
             String traitName = fields[0];
             String oboTerm = fields[1];
             // 0:Trait
-            Item trait = getTrait(traitName);
+            Item trait = getTrait(traitName).item;
             // 1:OntologyTerm
             Item ontologyTerm = getOntologyTerm(oboTerm);
             // add ontology annotation
@@ -199,6 +290,9 @@ public class GWASFileConverter extends DatastoreFileConverter {
     /**
      * Process a GWASResult file with trait-marker associations. All three fields are required.
      * Prefix trait_name with collection identifier for primaryIdentifier.
+     *
+     * Results above pValueCeiling are skipped as they're read. With topResultsPerTrait>0, only a bounded heap of
+     * the best results for each trait is held, and their Items are created in close().
      * 0                                        1               2
      * #trait_name				marker		pvalue
      * 100 Seed weight from Florida-7 NAM	Affx-152042939	9.12e-9
@@ -224,31 +318,75 @@ public class GWASFileConverter extends DatastoreFileConverter {
             } catch (NumberFormatException ex) {
                 throw new RuntimeException("File "+getCurrentFile().getName()+" has a malformatted p-value:"+pValueString+" in line:"+line);
             }                
-            // 0:Trait.name
-            Item trait = getTrait(traitName);
+            resultCount++;
+            if (pValue>pValueCeiling) {
+                filteredCount++;
+                continue;
+            }
+            if (topResultsPerTrait>0) {
+                addTopResult(getTrait(traitName), new ResultRecord(markerName, pValue, resultCount));
+                continue;
+            }
             // 0,1,2:GWASResult
-            Item gwasResult = getGWASResult(trait, markerName, pValue);
-            trait.addToCollection("gwasResults", gwasResult);
+            getGWASResult(getTrait(traitName), markerName, pValue);
         }
         bufferedReader.close();
     }
 
     /**
-     * Return a new or existing Trait Item keyed by name; primaryIdentifier is concocted from collection identifier and name.
+     * Offer a result to its trait's heap, dropping the worst result once the heap holds topResultsPerTrait.
+     */
+    void addTopResult(TraitRecord trait, ResultRecord record) {
+        PriorityQueue<ResultRecord> heap = topResults.get(trait);
+        if (heap==null) {
+            heap = new PriorityQueue<>(ResultRecord::compareWorstFirst);
+            topResults.put(trait, heap);
+        }
+        if (heap.size()<topResultsPerTrait) {
+            heap.add(record);
+        } else if (ResultRecord.compareWorstFirst(record, heap.peek())>0) {
+            heap.poll();
+            heap.add(record);
+            filteredCount++;
+        } else {
+            filteredCount++;
+        }
+    }
+
+    /**
+     * Create the GWASResult Items for the retained top results, in file order within each trait.
+     */
+    void createTopResults() {
+        for (TraitRecord trait : topResults.keySet()) {
+            List<ResultRecord> records = new ArrayList<>(topResults.get(trait));
+            records.sort((a, b) -> Long.compare(a.order, b.order));
+            for (ResultRecord record : records) {
+                getGWASResult(trait, record.markerName, record.pValue);
+            }
+        }
+        topResults.clear();
+    }
+
+    /**
+     * Return a new or existing TraitRecord keyed by name; primaryIdentifier is concocted from collection identifier and name.
+     * Names that differ only by spaces and commas share a Trait.
      */
-    Item getTrait(String name) {
+    TraitRecord getTrait(String name) {
+        TraitRecord trait = traitsByName.get(name);
+        if (trait!=null) return trait;
         String primaryIdentifier = readme.identifier +
             ":" +
             name.replace(' ', '_').replace(',', '_');
-        if (traits.containsKey(primaryIdentifier)) {
-            return traits.get(primaryIdentifier);
-        } else {
-            Item trait = createItem("Trait");
+        trait = traits.get(primaryIdentifier);
+        if (trait==null) {
+            Item item = createItem("Trait");
+            item.setAttribute("primaryIdentifier", primaryIdentifier);
+            item.setAttribute("name", name);
+            trait = new TraitRecord(item, primaryIdentifier);
             traits.put(primaryIdentifier, trait);
-            trait.setAttribute("primaryIdentifier", primaryIdentifier);
-            trait.setAttribute("name", name);
-            return trait;
         }
+        traitsByName.put(name, trait);
+        return trait;
     }
 
     /**
@@ -266,19 +404,18 @@ public class GWASFileConverter extends DatastoreFileConverter {
     }
 
     /**
-     * Return a GWASResult with the given trait, marker name, and p-value.
+     * Return a GWASResult with the given trait, marker name, and p-value, added to the trait's results.
      */
-    Item getGWASResult(Item trait, String markerName, double pValue) {
-        String primaryIdentifier = readme.identifier + ":" +
-            trait.getAttribute("name").getValue().replace(' ', '_').replace(',', '_') +
-            ":" +
-            markerName;
+    Item getGWASResult(TraitRecord trait, String markerName, double pValue) {
+        identifierBuilder.setLength(0);
+        identifierBuilder.append(trait.resultKeyPrefix).append(markerName);
         Item gwasResult = createItem("GWASResult");
-        gwasResult.setAttribute("primaryIdentifier", primaryIdentifier);
+        gwasResult.setAttribute("primaryIdentifier", identifierBuilder.toString());
         gwasResult.setAttribute("markerName", markerName);
         gwasResult.setAttribute("pValue", String.valueOf(pValue));
-        gwasResult.setReference("trait", trait);
+        gwasResult.setReference("trait", trait.item);
         gwasResults.add(gwasResult);
+        trait.results.add(gwasResult);
         return gwasResult;
     }
 
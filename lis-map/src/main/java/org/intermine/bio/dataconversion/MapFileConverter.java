@@ -5,7 +5,7 @@ import java.io.IOException;
 import java.io.Reader;
 
 import java.util.List;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Set;
@@ -27,6 +27,9 @@ import org.ncgr.zip.GZIPBufferedReader;
  *
  * Actual GeneticMarker objects are NOT created here; rather, their names are stored and the
  * corresponding GeneticMarker objects (SequenceFeatures) are related by a post-processor.
+ *
+ * Marker positions are collected in a LinkageGroupPositionIndex and the LinkageGroupPosition Items are created in
+ * close() in cM order on each linkage group, with their rank and neighbouring markers.
  * 
  * @author Sam Hokin
  */
@@ -37,8 +40,10 @@ public class MapFileConverter extends DatastoreFileConverter {
     // local Items to store
     Item geneticMap;
     Item genotypingPlatform;
-    List<Item> linkageGroupPositions = new LinkedList<>();
     Map<String,Item> linkageGroups = new HashMap<>();
+
+    // marker positions sorted by cM on each linkage group
+    LinkageGroupPositionIndex positionIndex = new LinkageGroupPositionIndex();
  
     // validate the collection first by storing a flag
     boolean collectionValidated = false;
@@ -124,7 +129,30 @@ public class MapFileConverter extends DatastoreFileConverter {
         store(geneticMap);
         if (genotypingPlatform != null) store(genotypingPlatform);
         store(linkageGroups.values());
-        store(linkageGroupPositions);
+        storeLinkageGroupPositions();
+    }
+
+    /**
+     * Create and store the LinkageGroupPosition Items from the position index, in cM order on each linkage group,
+     * with their 1-based rank and the names of the markers on either side.
+     */
+    void storeLinkageGroupPositions() throws ObjectStoreException {
+        for (String lgId : positionIndex.getLinkageGroups()) {
+            Item linkageGroup = getLinkageGroup(lgId);
+            int size = positionIndex.size(lgId);
+            List<Item> linkageGroupPositions = new ArrayList<>(size);
+            for (int rank=0; rank<size; rank++) {
+                Item lgPosition = createItem("LinkageGroupPosition");
+                lgPosition.setAttribute("markerName", positionIndex.getMarkerName(lgId, rank));
+                lgPosition.setAttribute("position", String.valueOf(positionIndex.getPosition(lgId, rank)));
+                lgPosition.setAttribute("rank", String.valueOf(rank+1));
+                if (rank>0) lgPosition.setAttribute("previousMarkerName", positionIndex.getMarkerName(lgId, rank-1));
+                if (rank<size-1) lgPosition.setAttribute("nextMarkerName", positionIndex.getMarkerName(lgId, rank+1));
+                lgPosition.setReference("linkageGroup", linkageGroup);
+                linkageGroupPositions.add(lgPosition);
+            }
+            store(linkageGroupPositions);
+        }
     }
     
     /**
@@ -187,15 +215,11 @@ public class MapFileConverter extends DatastoreFileConverter {
             }
             String markerName = fields[0].trim();
             String lgId = fields[1].trim();
-            Double position = Double.parseDouble(fields[2]);
+            double position = Double.parseDouble(fields[2]);
             // linkage group
-            Item linkageGroup = getLinkageGroup(lgId);
-            // linkage group position for this marker
-            Item lgPosition = createItem("LinkageGroupPosition");
-            linkageGroupPositions.add(lgPosition);
-            lgPosition.setAttribute("markerName", markerName);
-            lgPosition.setAttribute("position", String.valueOf(position));
-            lgPosition.setReference("linkageGroup", linkageGroup);
+            getLinkageGroup(lgId);
+            // linkage group position for this marker, stored in close()
+            positionIndex.add(lgId, markerName, position);
         }
         br.close();
     }
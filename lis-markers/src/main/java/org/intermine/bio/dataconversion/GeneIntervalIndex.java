@@ -0,0 +1,249 @@
+package org.intermine.bio.dataconversion;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ncgr.zip.GZIPBufferedReader;
+
+/**
+ * An in-memory index of gene intervals per sequence, read from an annotation collection's gene_models_main GFF3, for
+ * finding the genes that overlap a marker and the gene nearest to it.
+ *
+ * Each sequence's genes are held in primitive arrays sorted by start, and longest first at equal starts. Overlap queries
+ * use a nested containment list: every gene contained in another is moved to a sublist of its container, so that within
+ * a list the ends increase with the starts, and the overlapping genes in a list are a contiguous run found by binary
+ * search on the ends. A query costs a binary search per list that it descends into plus the genes it returns, however
+ * long the genes around the marker are. The running maximum end and the gene that has it give the nearest gene to the
+ * left without scanning.
+ *
+ * @author Sam Hokin
+ */
+public class GeneIntervalIndex {
+
+    Map<String,SequenceGenes> sequences = new HashMap<>();
+
+    /**
+     * The genes on one sequence, sorted by start.
+     */
+    static class SequenceGenes {
+        int[] starts;
+        int[] ends;
+        String[] ids;
+        int[] maxEnds;       // maxEnds[i] = max(ends[0..i])
+        int[] maxEndIndexes; // the index of the first gene with end maxEnds[i]
+
+        // the nested containment list: list 0 holds the genes contained in no other gene, and list childLists[i] the genes
+        // whose innermost container is gene i; the genes of list l are listMembers[listOffsets[l]..listOffsets[l+1]), in index order
+        int[] listOffsets;
+        int[] listMembers;
+        int[] childLists;    // the list of the genes contained in gene i, or -1 if none
+
+        SequenceGenes(List<int[]> intervals, List<String> geneIds) {
+            int n = intervals.size();
+            Integer[] order = new Integer[n];
+            for (int i=0; i<n; i++) order[i] = i;
+            // longest first at equal starts so containers precede the genes they contain; stable, so identical genes stay in file order
+            Arrays.sort(order, (a, b) -> {
+                    int c = Integer.compare(intervals.get(a)[0], intervals.get(b)[0]);
+                    return (c!=0) ? c : Integer.compare(intervals.get(b)[1], intervals.get(a)[1]);
+                });
+            starts = new int[n];
+            ends = new int[n];
+            ids = new String[n];
+            maxEnds = new int[n];
+            maxEndIndexes = new int[n];
+            for (int i=0; i<n; i++) {
+                starts[i] = intervals.get(order[i])[0];
+                ends[i] = intervals.get(order[i])[1];
+                ids[i] = geneIds.get(order[i]);
+                if (i==0 || ends[i]>maxEnds[i-1]) {
+                    maxEnds[i] = ends[i];
+                    maxEndIndexes[i] = i;
+                } else {
+                    maxEnds[i] = maxEnds[i-1];
+                    maxEndIndexes[i] = maxEndIndexes[i-1];
+                }
+            }
+            buildContainmentList();
+        }
+
+        /**
+         * Assign each gene to the list of its innermost open container, or the top list 0. The stack holds the chain of
+         * genes containing the current one; a gene ending before the current gene can't contain it or any later gene
+         * that isn't also contained in a gene still on the stack.
+         */
+        void buildContainmentList() {
+            int n = starts.length;
+            int[] parents = new int[n];
+            int[] stack = new int[n];
+            int depth = 0;
+            childLists = new int[n];
+            Arrays.fill(childLists, -1);
+            int listCount = 1;
+            for (int i=0; i<n; i++) {
+                while (depth>0 && ends[stack[depth-1]]<ends[i]) depth--;
+                if (depth==0) {
+                    parents[i] = -1;
+                } else {
+                    parents[i] = stack[depth-1];
+                    if (childLists[parents[i]]==-1) childLists[parents[i]] = listCount++;
+                }
+                stack[depth++] = i;
+            }
+            // counting sort of the genes by list, keeping index order within each list
+            listOffsets = new int[listCount+1];
+            for (int i=0; i<n; i++) {
+                listOffsets[getList(parents[i])+1]++;
+            }
+            for (int l=0; l<listCount; l++) {
+                listOffsets[l+1] += listOffsets[l];
+            }
+            int[] next = Arrays.copyOf(listOffsets, listCount);
+            listMembers = new int[n];
+            for (int i=0; i<n; i++) {
+                listMembers[next[getList(parents[i])]++] = i;
+            }
+        }
+
+        /**
+         * @return the list holding the genes whose container is the given gene, 0 if it's -1
+         */
+        int getList(int parent) {
+            return (parent==-1) ? 0 : childLists[parent];
+        }
+
+        /**
+         * Add the indexes of the genes in the given list and its sublists that overlap start-end.
+         */
+        void addOverlapping(int list, int start, int end, List<Integer> overlapping) {
+            // the ends increase along a list, so find the first gene ending at or after start
+            int low = listOffsets[list];
+            int high = listOffsets[list+1] - 1;
+            while (low<=high) {
+                int mid = (low + high) >>> 1;
+                if (ends[listMembers[mid]]<start) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            for (int k=low; k<listOffsets[list+1] && starts[listMembers[k]]<=end; k++) {
+                int i = listMembers[k];
+                overlapping.add(i);
+                if (childLists[i]!=-1) addOverlapping(childLists[i], start, end, overlapping);
+            }
+        }
+
+        /**
+         * @return the index of the last gene with start<=position, or -1
+         */
+        int lastStartingAtOrBefore(int position) {
+            int low = 0;
+            int high = starts.length - 1;
+            while (low<=high) {
+                int mid = (low + high) >>> 1;
+                if (starts[mid]<=position) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return high;
+        }
+    }
+
+    /**
+     * Read the gene records from a gzipped GFF3 file.
+     *
+     * @param file the gene_models_main.gff3.gz file
+     * @return the number of genes indexed
+     */
+    public int load(File file) throws IOException {
+        Map<String,List<int[]>> intervals = new HashMap<>();
+        Map<String,List<String>> geneIds = new HashMap<>();
+        GFF3RecordReader gffReader = new GFF3RecordReader(GZIPBufferedReader.getReader(file));
+        GFF3Record gff = null;
+        int count = 0;
+        while ((gff=gffReader.next())!=null) {
+            if (!gff.getType().equals("gene")) continue;
+            String id = gff.getAttribute("ID");
+            if (id==null) {
+                throw new RuntimeException("Gene GFF line does not include ID: "+gff);
+            }
+            String seqname = gff.getSeqname();
+            if (!intervals.containsKey(seqname)) {
+                intervals.put(seqname, new ArrayList<>());
+                geneIds.put(seqname, new ArrayList<>());
+            }
+            intervals.get(seqname).add(new int[] { gff.getStart(), gff.getEnd() });
+            geneIds.get(seqname).add(id);
+            count++;
+        }
+        gffReader.close();
+        for (String seqname : intervals.keySet()) {
+            sequences.put(seqname, new SequenceGenes(intervals.get(seqname), geneIds.get(seqname)));
+        }
+        return count;
+    }
+
+    /**
+     * Return the IDs of the genes overlapping the given interval, in start order, longest first at equal starts.
+     */
+    public List<String> getOverlappingGenes(String seqname, int start, int end) {
+        List<String> overlapping = new ArrayList<>();
+        SequenceGenes genes = sequences.get(seqname);
+        if (genes==null || genes.starts.length==0) return overlapping;
+        List<Integer> indexes = new ArrayList<>();
+        genes.addOverlapping(0, start, end, indexes);
+        // sublists interleave with their parent list, so restore index order
+        Collections.sort(indexes);
+        for (int i : indexes) {
+            overlapping.add(genes.ids[i]);
+        }
+        return overlapping;
+    }
+
+    /**
+     * Return the nearest gene to the given interval and its distance in bases, 0 if it overlaps; or null if there are
+     * no genes on the sequence. Ties go to the gene on the left.
+     */
+    public NearestGene getNearestGene(String seqname, int start, int end) {
+        SequenceGenes genes = sequences.get(seqname);
+        if (genes==null || genes.starts.length==0) return null;
+        int i = genes.lastStartingAtOrBefore(end);
+        NearestGene nearest = null;
+        if (i>=0) {
+            // the gene reaching furthest right among those starting at or before end
+            int index = genes.maxEndIndexes[i];
+            nearest = new NearestGene(genes.ids[index], Math.max(0, start-genes.ends[index]));
+        }
+        if (i+1<genes.starts.length) {
+            int distance = genes.starts[i+1] - end;
+            if (nearest==null || distance<nearest.distance) {
+                nearest = new NearestGene(genes.ids[i+1], distance);
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * A gene ID and its distance from a query interval.
+     */
+    public static class NearestGene {
+        public final String id;
+        public final int distance;
+
+        NearestGene(String id, int distance) {
+            this.id = id;
+            this.distance = distance;
+        }
+    }
+
+}
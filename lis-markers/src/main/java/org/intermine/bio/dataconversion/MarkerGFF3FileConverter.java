@@ -1,39 +1,22 @@
 package org.intermine.bio.dataconversion;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.Reader;
 import java.io.IOException;
-import java.io.InputStream;
 
-import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.Set;
-import java.util.HashSet;
-import java.util.Properties;
-import static java.util.Map.entry;
+import java.util.LinkedHashMap;
 
-import org.apache.commons.text.WordUtils;
 import org.apache.log4j.Logger;
 
-import org.intermine.dataconversion.FileConverter;
 import org.intermine.dataconversion.ItemWriter;
 import org.intermine.metadata.Model;
-import org.intermine.metadata.StringUtil;
 import org.intermine.objectstore.ObjectStoreException;
 import org.intermine.xml.full.Item;
 
-import org.biojava.nbio.genome.parsers.gff.FeatureI;
-import org.biojava.nbio.genome.parsers.gff.FeatureList;
-import org.biojava.nbio.genome.parsers.gff.GFF3Reader;
-import org.biojava.nbio.genome.parsers.gff.Location;
-
 import org.ncgr.datastore.validation.MarkerCollectionValidator;
 import org.ncgr.zip.GZIPBufferedReader;
 
@@ -43,18 +26,56 @@ import org.ncgr.zip.GZIPBufferedReader;
  * All features will be loaded as GeneticMarker. GeneticMarker.type will be set to the value in the GFF
  * type column (e.g. SNP), and, if the marker is a single base it will be forced to type=SNP.
  *
+ * The GFF is streamed straight from the gzip file into compact MarkerRecords, which are only expanded into
+ * GeneticMarker and Location Items in close(), markerBatchSize markers at a time.
+ *
+ * If geneGffFile is set to the gene_models_main GFF3 of an annotation collection on the same strain.assembly, the
+ * genes are indexed by interval and each marker gets its overlapping genes and its nearest gene as it's expanded.
+ *
  * @author Sam Hokin
  */
 public class MarkerGFF3FileConverter extends DatastoreFileConverter {
 	
     private static final Logger LOG = Logger.getLogger(MarkerGFF3FileConverter.class);
-    private static final String TEMPFILE = "/tmp/marker.gff3";
+
+    // number of markers expanded into Items and stored at a time
+    static final int DEFAULT_MARKER_BATCH_SIZE = 10000;
 
     // all Items to be stored
     Map<String,Item> chromosomes = new HashMap<>();
     Map<String,Item> supercontigs = new HashMap<>();
-    Map<String,Item> geneticMarkers = new HashMap<>();
-    List<Item> locations = new ArrayList<>();
+
+    // compact marker records, keyed and ordered by primaryIdentifier
+    Map<String,MarkerRecord> markerRecords = new LinkedHashMap<>();
+
+    // interned seqnames, their chromosome/supercontig Items, and the GFF type column values
+    Map<String,Integer> seqnameIndexes = new HashMap<>();
+    List<String> seqnames = new ArrayList<>();        // by seqname index
+    List<Item> sequences = new ArrayList<>();        // Chromosome, Supercontig or null, by seqname index
+    List<String> sequenceClasses = new ArrayList<>(); // SequencePrefixTrie.CHROMOSOME, SUPERCONTIG or null, by seqname index
+    Map<String,String> types = new HashMap<>();
+
+    // can be set in project.xml
+    int markerBatchSize = DEFAULT_MARKER_BATCH_SIZE;
+    String geneGffFile;
+
+    // genes by interval, if geneGffFile is set, and the Gene Items referenced by markers
+    GeneIntervalIndex geneIndex;
+    Map<String,Item> genes = new HashMap<>();
+
+    /**
+     * A genetic marker as read from the GFF, held until it's expanded into Items in close().
+     * The location is the first one seen for the ID; later lines with the same ID update the other fields.
+     */
+    static class MarkerRecord {
+        String id;
+        int seqnameIndex;
+        int start;
+        int end;
+        boolean negative;
+        String type;
+        String name, symbol, alias, note, alleles, motif;
+    }
 
     // validate the collection first by storing a flag
     boolean collectionValidated = false;
@@ -68,6 +89,24 @@ public class MarkerGFF3FileConverter extends DatastoreFileConverter {
         super(writer, model);
     }
 
+    /**
+     * markerBatchSize can be set in project.xml: the number of markers expanded into Items and stored at a time
+     */
+    public void setMarkerBatchSize(String markerBatchSize) {
+        this.markerBatchSize = Integer.parseInt(markerBatchSize);
+        if (this.markerBatchSize<1) {
+            throw new RuntimeException("markerBatchSize must be at least 1.");
+        }
+    }
+
+    /**
+     * geneGffFile can be set in project.xml to the gene_models_main.gff3.gz file of an annotation collection on the
+     * same strain.assembly, to relate markers to their overlapping and nearest genes
+     */
+    public void setGeneGffFile(String geneGffFile) {
+        this.geneGffFile = geneGffFile;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -101,19 +140,12 @@ public class MarkerGFF3FileConverter extends DatastoreFileConverter {
         if (readme==null) {
             throw new RuntimeException("README file not read. Aborting.");
         }
-        if (geneticMarkers.size()==0) {
+        if (markerRecords.size()==0) {
             throw new RuntimeException("No genetic markers loaded. Aborting.");
         }
         // create GenotypingPlatform for marker collection
         Item genotypingPlatform = createItem("GenotypingPlatform");
         genotypingPlatform.setAttribute("primaryIdentifier", readme.genotyping_platform);
-        // set collection attributes and references
-        for (Item geneticMarker : geneticMarkers.values()) {
-            geneticMarker.setAttribute("assemblyVersion", assemblyVersion);
-            geneticMarker.setReference("organism", organism);
-            geneticMarker.setReference("strain", strain);
-            geneticMarker.addToCollection("genotypingPlatforms", genotypingPlatform);
-        }
         for (Item chromosome : chromosomes.values()) {
             chromosome.setAttribute("assemblyVersion", assemblyVersion);
             chromosome.setReference("organism", organism);
@@ -127,9 +159,6 @@ public class MarkerGFF3FileConverter extends DatastoreFileConverter {
         // add publication to Annotatables (but not chromosome/supercontig)
         if (publication!=null) {
             genotypingPlatform.addToCollection("publications", publication);
-            for (Item geneticMarker : geneticMarkers.values()) {
-                geneticMarker.addToCollection("publications", publication);
-            }
         }
         // collection items
         storeCollectionItems();
@@ -137,74 +166,142 @@ public class MarkerGFF3FileConverter extends DatastoreFileConverter {
         store(genotypingPlatform);
         store(chromosomes.values());
         store(supercontigs.values());
-        store(geneticMarkers.values());
-        store(locations);
+        // index the genes if we're relating markers to them
+        if (geneGffFile!=null) {
+            geneIndex = new GeneIntervalIndex();
+            try {
+                int geneCount = geneIndex.load(new File(geneGffFile));
+                LOG.info("Indexed "+geneCount+" genes from "+geneGffFile);
+            } catch (IOException ex) {
+                throw new RuntimeException("Error reading gene GFF "+geneGffFile, ex);
+            }
+        }
+        // expand the marker records into GeneticMarker and Location Items in bounded batches
+        List<Item> batch = new ArrayList<>();
+        int count = 0;
+        for (MarkerRecord record : markerRecords.values()) {
+            Item geneticMarker = createGeneticMarker(record, batch);
+            geneticMarker.addToCollection("genotypingPlatforms", genotypingPlatform);
+            if (publication!=null) geneticMarker.addToCollection("publications", publication);
+            count++;
+            if (count%markerBatchSize==0) {
+                store(batch);
+                batch.clear();
+            }
+        }
+        store(batch);
+        markerRecords.clear();
+        // genes referenced by markers
+        for (Item gene : genes.values()) {
+            gene.setReference("organism", organism);
+            gene.setReference("strain", strain);
+        }
+        store(genes.values());
     }
 
     /**
-     * Process a genetic marker GFF3 file, referenced by filename because GFFReader doesn't have a method to parse a Reader.
+     * Stream a genetic marker GFF3 file straight from the gzip file into compact MarkerRecords.
      * Assumes that ID=full-yuck-LIS-identifier and Name=name
      */
     void processMarkerGFF3File() throws IOException {
         if (readme==null) {
             throw new RuntimeException("README not read before "+getCurrentFile().getName()+". Aborting.");
         }
-        // uncompress the gff3.gz file to a temp file
-        File tempfile = new File(TEMPFILE);
-        tempfile.delete();
-        BufferedWriter writer = new BufferedWriter(new FileWriter(tempfile));
-        BufferedReader reader = GZIPBufferedReader.getReader(getCurrentFile());
-        String line = null;
-        while ( (line=reader.readLine())!=null ) {
-            writer.write(line);
-            writer.newLine();
-        }
-        writer.close();
-        // now load the uncompressed GFF3
-        FeatureList featureList = GFF3Reader.read(TEMPFILE);
-        for (FeatureI featureI : featureList) {
-            String seqname = featureI.seqname();
-            Location location = featureI.location();
-            String type = featureI.type();
+        GFF3RecordReader gffReader = new GFF3RecordReader(GZIPBufferedReader.getReader(getCurrentFile()));
+        GFF3Record gff = null;
+        while ((gff=gffReader.next())!=null) {
+            String type = gff.getType();
             // attributes (case-insensitive to initcap)
-            String id = getAttribute(featureI, "ID");
-            String name = getAttribute(featureI, "Name");
-            String note = getAttribute(featureI, "Note");
-            String alleles = getAttribute(featureI, "Alleles");
-            String alias = getAttribute(featureI, "Alias");
-            String symbol = getAttribute(featureI, "Symbol");
-            String motif = getAttribute(featureI, "Motif");
+            String id = gff.getAttribute("ID");
+            String name = gff.getAttribute("Name");
+            String note = gff.getAttribute("Note");
+            String alleles = gff.getAttribute("Alleles");
+            String alias = gff.getAttribute("Alias");
+            String symbol = gff.getAttribute("Symbol");
+            String motif = gff.getAttribute("Motif");
             // check that id exists and matches collection
             if (id==null) {
-                throw new RuntimeException("GFF line does not include ID: "+featureI.toString());
+                throw new RuntimeException("GFF line does not include ID: "+gff.toString());
             }
             // the following presumes that the README has already been read, which should be the case since capital R comes before lower case
             if (!matchesStrainAndAssembly(id)) {
                 throw new RuntimeException("ID "+id+" does not match strain.assembly from collection "+readme.identifier);
             }
             // GeneticMarker
-            Item geneticMarker = getGeneticMarker(id, location, seqname);
+            MarkerRecord record = getMarkerRecord(id, gff);
             // type
             if (type.equals("genetic_marker")) {
                 // auto-set type to SNP if one base
-                if (location.length()==1) geneticMarker.setAttribute("type", "SNP");
+                if (gff.getLength()==1) record.type = "SNP";
             } else {
                 // use the value in the type column
-                geneticMarker.setAttribute("type", type);
+                record.type = internType(type);
             }
             // name
-            if (name!=null) geneticMarker.setAttribute("name", name);
+            if (name!=null) record.name = name;
             // symbol
-            if (symbol!=null) geneticMarker.setAttribute("symbol", symbol);
+            if (symbol!=null) record.symbol = symbol;
             // alias
-            if (alias!=null) geneticMarker.setAttribute("alias", alias);
+            if (alias!=null) record.alias = alias;
             // note is normally not present
-            if (note!=null) geneticMarker.setAttribute("description", note);
+            if (note!=null) record.note = note;
             // alleles
-            if (alleles!=null) geneticMarker.setAttribute("alleles", alleles);
+            if (alleles!=null) record.alleles = alleles;
             // motif
-            if (motif!=null) geneticMarker.setAttribute("motif", motif);
+            if (motif!=null) record.motif = motif;
+        }
+        gffReader.close();
+    }
+
+    /**
+     * Get/add a MarkerRecord keyed by primaryIdentifier, with the location of the given GFF record.
+     */
+    MarkerRecord getMarkerRecord(String primaryIdentifier, GFF3Record gff) {
+        MarkerRecord record = markerRecords.get(primaryIdentifier);
+        if (record==null) {
+            record = new MarkerRecord();
+            record.id = primaryIdentifier;
+            record.seqnameIndex = getSeqnameIndex(gff.getSeqname());
+            record.start = gff.getStart();
+            record.end = gff.getEnd();
+            record.negative = gff.isNegative();
+            markerRecords.put(primaryIdentifier, record);
+        }
+        return record;
+    }
+
+    /**
+     * Return the interned index of a seqname, classifying it and creating its Chromosome or Supercontig the first time it's seen.
+     */
+    int getSeqnameIndex(String seqname) {
+        Integer index = seqnameIndexes.get(seqname);
+        if (index==null) {
+            index = sequences.size();
+            seqnameIndexes.put(seqname, index);
+            seqnames.add(seqname);
+            String sequenceClass = getSequenceClass(seqname);
+            if (SequencePrefixTrie.CHROMOSOME.equals(sequenceClass)) {
+                sequences.add(getChromosome(seqname));
+            } else if (SequencePrefixTrie.SUPERCONTIG.equals(sequenceClass)) {
+                sequences.add(getSupercontig(seqname));
+            } else {
+                sequences.add(null);
+            }
+            sequenceClasses.add(sequenceClass);
         }
+        return index;
+    }
+
+    /**
+     * Return a single shared instance of a GFF type column value.
+     */
+    String internType(String type) {
+        String interned = types.get(type);
+        if (interned==null) {
+            types.put(type, type);
+            interned = type;
+        }
+        return interned;
     }
 
     /**
@@ -244,63 +341,71 @@ public class MarkerGFF3FileConverter extends DatastoreFileConverter {
     }
 
     /**
-     * Get/add a geneticMarker Item of the given class, keyed by primaryIdentifier.
-     * Sets reference to chromosome or supercontig given by seqname.
+     * Create the GeneticMarker Item for a MarkerRecord, with its chromosome or supercontig Location if it's on one,
+     * adding them to the given list.
      */
-    Item getGeneticMarker(String primaryIdentifier, Location location, String seqname) {
-        if (geneticMarkers.containsKey(primaryIdentifier)) {
-            return geneticMarkers.get(primaryIdentifier);
-        } else {
-            Item geneticMarker = createItem("GeneticMarker");
-            geneticMarker.setAttribute("primaryIdentifier", primaryIdentifier);
-            geneticMarker.setAttribute("secondaryIdentifier", DatastoreUtils.extractSecondaryIdentifier(primaryIdentifier, false));
-            geneticMarker.setAttribute("length", String.valueOf(location.length()));
-            geneticMarkers.put(primaryIdentifier, geneticMarker);
-            if (isChromosome(seqname)) {
-                Item chromosome = getChromosome(seqname);
-                geneticMarker.setReference("chromosome", chromosome);
-                Item chromosomeLocation = createItem("Location");
-                chromosomeLocation.setReference("feature", geneticMarker);
-                if (location.isNegative()) {
-                    chromosomeLocation.setAttribute("strand", "-1");
-                } else {
-                    chromosomeLocation.setAttribute("strand", "1");
-                }
-                chromosomeLocation.setAttribute("start", String.valueOf(location.bioStart()));
-                chromosomeLocation.setAttribute("end", String.valueOf(location.bioEnd()));
-                chromosomeLocation.setReference("locatedOn", chromosome);
-                locations.add(chromosomeLocation);
-                geneticMarker.setReference("chromosomeLocation", chromosomeLocation);
-            } else if (isSupercontig(seqname)) {
-                Item supercontig = getSupercontig(seqname);
-                geneticMarker.setReference("supercontig", supercontig);
-                Item supercontigLocation = createItem("Location");
-                supercontigLocation.setReference("feature", geneticMarker);
-                if (location.isNegative()) {
-                    supercontigLocation.setAttribute("strand", "-1");
-                } else {
-                    supercontigLocation.setAttribute("strand", "1");
-                }
-                supercontigLocation.setAttribute("start", String.valueOf(location.bioStart()));
-                supercontigLocation.setAttribute("end", String.valueOf(location.bioEnd()));
-                supercontigLocation.setReference("locatedOn", supercontig);
-                locations.add(supercontigLocation);
-                geneticMarker.setReference("supercontigLocation", supercontigLocation);
+    Item createGeneticMarker(MarkerRecord record, List<Item> items) {
+        Item geneticMarker = createItem("GeneticMarker");
+        geneticMarker.setAttribute("primaryIdentifier", record.id);
+        geneticMarker.setAttribute("secondaryIdentifier", DatastoreUtils.extractSecondaryIdentifier(record.id, false));
+        geneticMarker.setAttribute("length", String.valueOf(record.end-record.start+1));
+        geneticMarker.setAttribute("assemblyVersion", assemblyVersion);
+        geneticMarker.setReference("organism", organism);
+        geneticMarker.setReference("strain", strain);
+        if (record.type!=null) geneticMarker.setAttribute("type", record.type);
+        if (record.name!=null) geneticMarker.setAttribute("name", record.name);
+        if (record.symbol!=null) geneticMarker.setAttribute("symbol", record.symbol);
+        if (record.alias!=null) geneticMarker.setAttribute("alias", record.alias);
+        if (record.note!=null) geneticMarker.setAttribute("description", record.note);
+        if (record.alleles!=null) geneticMarker.setAttribute("alleles", record.alleles);
+        if (record.motif!=null) geneticMarker.setAttribute("motif", record.motif);
+        items.add(geneticMarker);
+        String sequenceClass = sequenceClasses.get(record.seqnameIndex);
+        if (sequenceClass!=null) {
+            Item sequence = sequences.get(record.seqnameIndex);
+            Item location = createItem("Location");
+            location.setReference("feature", geneticMarker);
+            if (record.negative) {
+                location.setAttribute("strand", "-1");
+            } else {
+                location.setAttribute("strand", "1");
+            }
+            location.setAttribute("start", String.valueOf(record.start));
+            location.setAttribute("end", String.valueOf(record.end));
+            location.setReference("locatedOn", sequence);
+            items.add(location);
+            if (SequencePrefixTrie.CHROMOSOME.equals(sequenceClass)) {
+                geneticMarker.setReference("chromosome", sequence);
+                geneticMarker.setReference("chromosomeLocation", location);
+            } else {
+                geneticMarker.setReference("supercontig", sequence);
+                geneticMarker.setReference("supercontigLocation", location);
             }
-            return geneticMarker;
         }
+        if (geneIndex!=null) {
+            String seqname = seqnames.get(record.seqnameIndex);
+            for (String geneId : geneIndex.getOverlappingGenes(seqname, record.start, record.end)) {
+                geneticMarker.addToCollection("overlappingGenes", getGene(geneId));
+            }
+            GeneIntervalIndex.NearestGene nearestGene = geneIndex.getNearestGene(seqname, record.start, record.end);
+            if (nearestGene!=null) {
+                geneticMarker.setReference("nearestGene", getGene(nearestGene.id));
+                geneticMarker.setAttribute("nearestGeneDistance", String.valueOf(nearestGene.distance));
+            }
+        }
+        return geneticMarker;
     }
 
     /**
-     * Return an attribute for either the given name ignoring case
+     * Get/add a Gene Item, keyed by primaryIdentifier, to merge with the annotation collection's gene.
      */
-    static String getAttribute(FeatureI featureI, String name) {
-        Map<String,String> attributeMap = featureI.getAttributes();
-        for (String attributeName : attributeMap.keySet()) {
-            if (attributeName.equalsIgnoreCase(name)) {
-                return attributeMap.get(attributeName);
-            }
+    Item getGene(String primaryIdentifier) {
+        Item gene = genes.get(primaryIdentifier);
+        if (gene==null) {
+            gene = createItem("Gene");
+            gene.setAttribute("primaryIdentifier", primaryIdentifier);
+            genes.put(primaryIdentifier, gene);
         }
-        return null;
+        return gene;
     }
 }
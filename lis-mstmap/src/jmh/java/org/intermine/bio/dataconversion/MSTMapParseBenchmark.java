@@ -0,0 +1,134 @@
+package org.intermine.bio.dataconversion;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the genotypes/s of MSTMapFileLoaderTask.processMSTMapFile()'s per-line work on a synthetic MSTMap matrix of
+ * MARKERS rows by SAMPLES sample columns: reading and splitting each line, then either packing its calls with
+ * PackedGenotypes.encode() (genotypeStorage=packed) or visiting each call as the Genotype loop does (genotypeStorage=cells).
+ * The ObjectStore writes are not included.
+ *
+ * The matrix is streamed from ROW_VARIANTS pre-generated random rows of A, B, X and - calls, so it isn't held in memory.
+ *
+ * ./gradlew :bio-source-lis-mstmap:jmh
+ *
+ * An operation is one genotype, so the scores are genotypes/s.
+ *
+ * @author Sam Hokin
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xmx4g" })
+public class MSTMapParseBenchmark {
+
+    static final int MARKERS = 5000;
+    static final int SAMPLES = 50000;
+    static final int ROW_VARIANTS = 16;
+
+    static final String[] CALLS = { "A", "B", "X", "-" };
+
+    String header;
+    String[] rows = new String[ROW_VARIANTS];
+
+    @Setup
+    public void generateRows() {
+        Random random = new Random(1);
+        StringBuilder sb = new StringBuilder("locus_name");
+        for (int i=0; i<SAMPLES; i++) {
+            sb.append("\tsample").append(i);
+        }
+        header = sb.toString();
+        for (int r=0; r<ROW_VARIANTS; r++) {
+            sb = new StringBuilder();
+            for (int i=0; i<SAMPLES; i++) {
+                sb.append('\t').append(CALLS[random.nextInt(CALLS.length)]);
+            }
+            rows[r] = sb.toString();
+        }
+    }
+
+    /**
+     * Split each line and pack its calls, as in genotypeStorage=packed.
+     */
+    @Benchmark
+    @OperationsPerInvocation(MARKERS*SAMPLES)
+    public void packed(Blackhole blackhole) throws IOException {
+        BufferedReader reader = new BufferedReader(new MatrixReader());
+        int samples = reader.readLine().split("\t").length - 1;
+        String line = null;
+        while ((line=reader.readLine())!=null) {
+            String[] fields = line.split("\t");
+            blackhole.consume(fields[0]);
+            blackhole.consume(PackedGenotypes.encode(fields, 1, samples));
+        }
+        reader.close();
+    }
+
+    /**
+     * Split each line and visit each call, as in genotypeStorage=cells.
+     */
+    @Benchmark
+    @OperationsPerInvocation(MARKERS*SAMPLES)
+    public void cells(Blackhole blackhole) throws IOException {
+        BufferedReader reader = new BufferedReader(new MatrixReader());
+        reader.readLine();
+        String line = null;
+        while ((line=reader.readLine())!=null) {
+            String[] fields = line.split("\t");
+            blackhole.consume(fields[0]);
+            for (int i=1; i<fields.length; i++) {
+                blackhole.consume(fields[i]);
+            }
+        }
+        reader.close();
+    }
+
+    /**
+     * Serves the header and then MARKERS lines, each a marker name followed by one of the pre-generated rows.
+     */
+    class MatrixReader extends Reader {
+        int marker = -1; // -1 for the header
+        String current = header + "\n";
+        int position = 0;
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position==current.length()) {
+                if (marker+1==MARKERS) return -1;
+                marker++;
+                current = "marker" + marker + rows[marker%ROW_VARIANTS] + "\n";
+                position = 0;
+            }
+            int count = Math.min(length, current.length()-position);
+            current.getChars(position, position+count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
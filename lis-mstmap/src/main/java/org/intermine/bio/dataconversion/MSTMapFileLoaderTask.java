@@ -15,10 +15,8 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 
-import java.util.List;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.Set;
-import java.util.HashSet;
 
 import org.intermine.dataconversion.ItemWriter;
 import org.intermine.metadata.Model;
@@ -62,6 +60,9 @@ public class MSTMapFileLoaderTask extends FileDirectDataLoaderTask {
 
     String dataSetUrl, dataSetVersion;
 
+    // store genotypes as one Genotype per cell ("cells", default) or packed on each GenotypingRecord ("packed"), can be set in project.xml
+    boolean packedGenotypes = false;
+
     // validate the collection first by storing a flag
     boolean collectionValidated = false;
 
@@ -183,6 +184,23 @@ public class MSTMapFileLoaderTask extends FileDirectDataLoaderTask {
         this.dataSetVersion = dataSetVersion;
     }
 
+    /**
+     * The genotype storage mode can be set in project.xml:
+     *   cells  - a Genotype object per marker x sample cell (default)
+     *   packed - 2 bits per call in GenotypingRecord.packedGenotypes, with the sample order in GenotypingStudy.sampleOrder;
+     *            every MSTMap file in the collection must then have the same sample columns, with no | in the sample names
+     * @param genotypeStorage "cells" or "packed"
+     */
+    public void setGenotypeStorage(String genotypeStorage) {
+        if (genotypeStorage.equals("packed")) {
+            packedGenotypes = true;
+        } else if (genotypeStorage.equals("cells")) {
+            packedGenotypes = false;
+        } else {
+            throw new BuildException("genotypeStorage must be cells or packed.");
+        }
+    }
+
     /**
      * Process the README, which contains the GenotypingStudy attributes.
      *
@@ -230,48 +248,88 @@ public class MSTMapFileLoaderTask extends FileDirectDataLoaderTask {
     }
 
     /**
-     * Process a gzipped MSTMap file. We assume here that all MSTMaps in a directory are for the same organism
+     * Process a gzipped MSTMap file. We assume here that all MSTMaps in a directory are for the same organism.
+     * Samples are indexed by column in an array, and each Genotype cell is stored as it's read; the direct data loader batches the writes.
      */
     public void processMSTMapFile(File file) throws ObjectStoreException, IOException, FileNotFoundException {
-        List<GenotypingSample> samples = new LinkedList<>(); // has to support get(i)
+        long startTime = System.currentTimeMillis();
+        GenotypingSample[] samples = null; // samples[i-1] is the sample in column i
+        int recordCount = 0;
+        long genotypeCount = 0;
         // spin through the MSTMap file
         String line = null;
         BufferedReader reader = GZIPBufferedReader.getReader(file);
-        while ((line=reader.readLine())!=null) {
-            if (line.length()==0 || line.startsWith("#")) continue;
-            String[] fields = line.split("\t");
-            if (samples.size()==0) {
-                // first field is something like "locus_name"
-                for (int i=1; i<fields.length; i++) {
-                    String sampleName = fields[i];
-                    GenotypingSample sample = getDirectDataLoader().createObject(org.intermine.model.bio.GenotypingSample.class);
-                    sample.setPrimaryIdentifier(sampleName);
-                    sample.setOrganism(organism);
-                    sample.setStudy(study);
-                    getDirectDataLoader().store(sample);
-                    samples.add(sample);
-                }
-                study.setSamples(Set.copyOf(samples));
-                LOG.info("Loaded "+samples.size()+" samples from MSTMap genotyping file.");
-            } else {
-                // marker name
-                String markerName = fields[0];
-                // GenotypingRecord
-                GenotypingRecord record = getDirectDataLoader().createObject(org.intermine.model.bio.GenotypingRecord.class);
-                record.setMarkerName(markerName);
-                record.setStudy(study);
-                record.setDataSet(dataSet);
-                getDirectDataLoader().store(record);
-                // Genotype
-                for (int i=1; i<fields.length; i++) {
-                    GenotypingSample sample = samples.get(i-1);
-                    Genotype genotype = getDirectDataLoader().createSimpleObject(org.intermine.model.bio.Genotype.class);
-                    genotype.setValue(fields[i]);
-                    genotype.setSample(sample);
-                    genotype.setRecord(record);
-                    getDirectDataLoader().store(genotype);
+        try {
+            while ((line=reader.readLine())!=null) {
+                if (line.length()==0 || line.startsWith("#")) continue;
+                String[] fields = line.split("\t");
+                if (samples==null) {
+                    // first field is something like "locus_name"
+                    samples = new GenotypingSample[fields.length-1];
+                    for (int i=1; i<fields.length; i++) {
+                        String sampleName = fields[i];
+                        GenotypingSample sample = getDirectDataLoader().createObject(org.intermine.model.bio.GenotypingSample.class);
+                        sample.setPrimaryIdentifier(sampleName);
+                        sample.setOrganism(organism);
+                        sample.setStudy(study);
+                        getDirectDataLoader().store(sample);
+                        samples[i-1] = sample;
+                    }
+                    study.setSamples(Set.copyOf(Arrays.asList(samples)));
+                    if (packedGenotypes) {
+                        StringBuilder sampleOrder = new StringBuilder();
+                        for (GenotypingSample sample : samples) {
+                            // sampleOrder is |-separated, so a | in a name would shift every later sample
+                            if (sample.getPrimaryIdentifier().indexOf('|')>=0) {
+                                throw new RuntimeException("MSTMap file "+file.getName()+" has sample name "+sample.getPrimaryIdentifier()+
+                                                           " containing |, which can't be stored in the packed sample order. Use genotypeStorage=cells.");
+                            }
+                            if (sampleOrder.length()>0) sampleOrder.append("|");
+                            sampleOrder.append(sample.getPrimaryIdentifier());
+                        }
+                        // every file's packedGenotypes are decoded against the study's one sample order
+                        if (study.getSampleOrder()!=null && !study.getSampleOrder().equals(sampleOrder.toString())) {
+                            throw new RuntimeException("MSTMap file "+file.getName()+" has different sample columns than an earlier file in the collection;"+
+                                                       " packed genotypes require every MSTMap file to have the same samples in the same order. Use genotypeStorage=cells.");
+                        }
+                        study.setSampleOrder(sampleOrder.toString());
+                    }
+                    LOG.info("Loaded "+samples.length+" samples from MSTMap genotyping file.");
+                } else {
+                    if (fields.length-1>samples.length) {
+                        throw new RuntimeException("MSTMap line has more values than there are samples ("+samples.length+"): "+fields[0]);
+                    }
+                    // marker name
+                    String markerName = fields[0];
+                    // GenotypingRecord
+                    GenotypingRecord record = getDirectDataLoader().createObject(org.intermine.model.bio.GenotypingRecord.class);
+                    record.setMarkerName(markerName);
+                    record.setStudy(study);
+                    record.setDataSet(dataSet);
+                    if (packedGenotypes) {
+                        record.setPackedGenotypes(PackedGenotypes.encode(fields, 1, samples.length));
+                    }
+                    getDirectDataLoader().store(record);
+                    recordCount++;
+                    // Genotype
+                    if (!packedGenotypes) {
+                        for (int i=1; i<fields.length; i++) {
+                            Genotype genotype = getDirectDataLoader().createSimpleObject(org.intermine.model.bio.Genotype.class);
+                            genotype.setValue(fields[i]);
+                            genotype.setSample(samples[i-1]);
+                            genotype.setRecord(record);
+                            getDirectDataLoader().store(genotype);
+                            genotypeCount++;
+                        }
+                    }
                 }
             }
+        } finally {
+            reader.close();
         }
+        double seconds = (System.currentTimeMillis()-startTime)/1000.0;
+        if (packedGenotypes && samples!=null) genotypeCount = (long) recordCount*samples.length;
+        LOG.info("Loaded "+recordCount+" records and "+genotypeCount+(packedGenotypes ? " packed" : "")+" genotypes in "+seconds+" s ("+
+                 Math.round(genotypeCount/Math.max(seconds, 0.001))+" genotypes/s).");
     }
 }
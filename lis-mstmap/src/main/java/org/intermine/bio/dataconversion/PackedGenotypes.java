@@ -0,0 +1,84 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2021 NCGR
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ */
+
+import java.util.Base64;
+
+/**
+ * Packs a row of MSTMap calls into 2 bits per sample, stored base64-encoded in GenotypingRecord.packedGenotypes.
+ *
+ * Sample i (in GenotypingStudy.sampleOrder) occupies bits 2*(i%4) and 2*(i%4)+1 of byte i/4:
+ * 0 = missing (- or U), 1 = A, 2 = B, 3 = heterozygous (X). Calls are case-insensitive.
+ *
+ * @author Sam Hokin
+ */
+public class PackedGenotypes {
+
+    public static final int MISSING = 0;
+    public static final int A = 1;
+    public static final int B = 2;
+    public static final int HET = 3;
+
+    static final char[] CALLS = { '-', 'A', 'B', 'X' };
+
+    /**
+     * Pack the calls in fields[from] onward; samples beyond the end of fields are missing.
+     *
+     * @param fields the split MSTMap line
+     * @param from the index of the first call in fields
+     * @param sampleCount the number of samples in the study
+     * @return the base64-encoded packed calls
+     * @throws RuntimeException if a call isn't one of A, B, X, - or U
+     */
+    public static String encode(String[] fields, int from, int sampleCount) {
+        byte[] packed = new byte[(sampleCount+3)/4];
+        for (int i=0; i<sampleCount && from+i<fields.length; i++) {
+            int code = getCode(fields[from+i]);
+            packed[i/4] |= code << (2*(i%4));
+        }
+        return Base64.getEncoder().encodeToString(packed);
+    }
+
+    /**
+     * Decode a GenotypingRecord's packedGenotypes once, for reading its calls with getCall().
+     *
+     * @param packedGenotypes the base64-encoded packed calls
+     * @return the packed calls, 4 samples per byte
+     */
+    public static byte[] decodeRow(String packedGenotypes) {
+        return Base64.getDecoder().decode(packedGenotypes);
+    }
+
+    /**
+     * Return the call for sample i from a row decoded by decodeRow(): one of '-', 'A', 'B', 'X'.
+     */
+    public static char getCall(byte[] packed, int i) {
+        return CALLS[(packed[i/4] >> (2*(i%4))) & 3];
+    }
+
+    /**
+     * Return the 2-bit code for an MSTMap call.
+     *
+     * @throws RuntimeException if the call can't be packed
+     */
+    static int getCode(String call) {
+        if (call.length()==1) {
+            switch (call.charAt(0)) {
+            case 'A': case 'a': return A;
+            case 'B': case 'b': return B;
+            case 'X': case 'x': return HET;
+            case '-': case 'U': case 'u': return MISSING;
+            default: break;
+            }
+        }
+        throw new RuntimeException("MSTMap call "+call+" cannot be packed; set genotypeStorage=cells in project.xml.");
+    }
+
+}
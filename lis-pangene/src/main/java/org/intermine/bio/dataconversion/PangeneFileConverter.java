@@ -136,11 +136,9 @@ public class PangeneFileConverter extends DatastoreFileConverter {
      * @param proteinIdentifier the identifier of the corresponding protein
      */
     public Item getGene(String proteinIdentifier) {
-        String[] fields = proteinIdentifier.split("\\.");
-        String geneIdentifier = fields[0];
-        for (int i=1; i<(fields.length-1); i++) {
-            geneIdentifier += "." + fields[i];
-        }
+        LisIdentifier fields = new LisIdentifier(proteinIdentifier);
+        String geneIdentifier = fields.getField(0);
+        if (fields.getFieldCount()>2) geneIdentifier = fields.getFieldsTo(fields.getFieldCount()-1);
         if (genes.containsKey(geneIdentifier)) {
             return genes.get(geneIdentifier);
         } else {
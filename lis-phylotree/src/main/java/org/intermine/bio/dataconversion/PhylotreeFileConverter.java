@@ -206,7 +206,7 @@ public class PhylotreeFileConverter extends DatastoreFileConverter {
      * Return true if the given identifier is in LIS full yuck format.
      */
     boolean isFullYuck(String primaryIdentifier) {
-        return primaryIdentifier.split("\\.").length>=5;
+        return new LisIdentifier(primaryIdentifier).getFieldCount()>=5;
     }
         
     /**
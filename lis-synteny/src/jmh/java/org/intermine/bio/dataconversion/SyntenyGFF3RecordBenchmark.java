@@ -0,0 +1,122 @@
+package org.intermine.bio.dataconversion;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.ncgr.zip.GZIPBufferedReader;
+
+/**
+ * Compares LegacySyntenyGFF3Record, the StringTokenizer parser that decoded every field and built the attribute Map
+ * for every line, with the current SyntenyGFF3Record, reading the fields that SyntenyFileConverter reads from each
+ * syntenic_region record of a DAGchainer synteny GFF.
+ *
+ * The GFF is a datastore synteny file given with -PsyntenyGff, for example:
+ *
+ * ./gradlew :bio-source-lis-synteny:jmh -PsyntenyGff=/path/to/glyma.Wm82.gnm2.x.phavu.G19833.gnm2.KEY4.gff3.gz
+ *
+ * The file's syntenic_region lines are read into memory once, so the benchmarks measure parsing, not I/O or decompression.
+ * Each operation parses the next line in turn, so the scores are per record and comparable between files of different sizes.
+ *
+ * @author Sam Hokin
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SyntenyGFF3RecordBenchmark {
+
+    @Param({""})
+    public String gffFile;
+
+    List<String> lines = new ArrayList<>();
+    int next = 0;
+
+    @Setup
+    public void readLines() throws IOException {
+        if (gffFile==null || gffFile.length()==0) {
+            throw new RuntimeException("Set the DAGchainer synteny GFF to parse with -PsyntenyGff=/path/to/file.gff3.gz");
+        }
+        BufferedReader reader = GZIPBufferedReader.getReader(new File(gffFile));
+        String line = null;
+        while ((line=reader.readLine())!=null) {
+            if (line.startsWith("#") || line.trim().length()==0) continue;
+            if (!new SyntenyGFF3Record(line).getType().equals("syntenic_region")) continue;
+            lines.add(line);
+        }
+        reader.close();
+        if (lines.size()==0) {
+            throw new RuntimeException("Synteny GFF "+gffFile+" has no syntenic_region records.");
+        }
+    }
+
+    /**
+     * @return the next syntenic_region line, cycling through the file
+     */
+    String nextLine() {
+        String line = lines.get(next);
+        next = (next+1==lines.size()) ? 0 : next+1;
+        return line;
+    }
+
+    /**
+     * Parse a record and read the fields that SyntenyFileConverter read before the single-pass parser, through the attribute Map.
+     */
+    @Benchmark
+    public void legacy(Blackhole blackhole) throws IOException {
+        LegacySyntenyGFF3Record gff = new LegacySyntenyGFF3Record(nextLine());
+        blackhole.consume(gff.getSequenceID());
+        blackhole.consume(gff.getStart());
+        blackhole.consume(gff.getEnd());
+        blackhole.consume(gff.getStrand());
+        blackhole.consume(gff.getScore());
+        blackhole.consume(gff.getTarget());
+        blackhole.consume(gff.getAttributes().get("median_Ks").get(0));
+        blackhole.consume(gff.getNames().get(0));
+    }
+
+    /**
+     * Parse a record and read the same fields through the single-valued getters, as SyntenicPair does.
+     */
+    @Benchmark
+    public void current(Blackhole blackhole) throws IOException {
+        SyntenyGFF3Record gff = new SyntenyGFF3Record(nextLine());
+        blackhole.consume(gff.getSequenceID());
+        blackhole.consume(gff.getStart());
+        blackhole.consume(gff.getEnd());
+        blackhole.consume(gff.getStrand());
+        blackhole.consume(gff.getScore());
+        blackhole.consume(gff.getTarget());
+        blackhole.consume(gff.getAttribute("median_Ks"));
+        blackhole.consume(gff.getName());
+    }
+
+    /**
+     * Parse a record into a SyntenicPair, as SyntenyFileConverter.parseGFF() does.
+     */
+    @Benchmark
+    public void currentSyntenicPair(Blackhole blackhole) throws IOException {
+        SyntenyGFF3Record gff = new SyntenyGFF3Record(nextLine());
+        blackhole.consume(new SyntenicPair(gff));
+    }
+
+}
@@ -0,0 +1,155 @@
+package org.intermine.bio.dataconversion;
+
+/**
+ * The source and target regions of a DAGchainer syntenic_region GFF record, parsed once per record.
+ *
+ * glyma.Wm82.gnm2.Gm01 DAGchainer syntenic_region 1122016 1208621 226.0 - . Name=phavu.G19833.gnm2.Chr02;matches=phavu.G19833.gnm2.Chr02:27981238..28077179;median_Ks=0.3600
+ *
+ * The source region is given by the record's seqid, start, end and strand; the target region by the Target or matches
+ * attribute, with the target strand given by the last character of the Name attribute.
+ *
+ * @author Sam Hokin
+ */
+public class SyntenicPair {
+
+    String sourceChromosome;
+    int sourceStart;
+    int sourceEnd;
+    String sourceStrand;
+    String targetChromosome;
+    int targetStart;
+    int targetEnd;
+    String targetStrand;
+    Double score;
+    String medianKs;
+
+    /**
+     * Parse the source and target regions from a syntenic_region record.
+     *
+     * @param gff the SyntenyGFF3Record
+     * @throws RuntimeException if the Target/matches attribute is missing or malformed
+     */
+    public SyntenicPair(SyntenyGFF3Record gff) {
+        sourceChromosome = gff.getSequenceID();
+        sourceStart = gff.getStart();
+        sourceEnd = gff.getEnd();
+        sourceStrand = gff.getStrand();
+        score = gff.getScore();
+        medianKs = gff.getAttribute("median_Ks");
+        // Target=Araip.B01:17125379..17229197
+        String target = gff.getTarget();
+        if (target==null) {
+            throw new RuntimeException("GFF syntenic_region record is missing target attribute: "+gff);
+        }
+        int colon = target.indexOf(':');
+        if (colon<0) {
+            throw new RuntimeException("GFF syntenic_region record has malformed target attribute: "+target);
+        }
+        targetChromosome = target.substring(0, colon);
+        int rangeEnd = target.indexOf(':', colon+1);
+        if (rangeEnd<0) rangeEnd = target.length();
+        int dots = target.indexOf("..", colon+1);
+        if (dots<0 || dots>rangeEnd) {
+            throw new RuntimeException("GFF syntenic_region record has malformed target attribute: "+target);
+        }
+        targetStart = Integer.parseInt(target.substring(colon+1, dots));
+        int endEnd = target.indexOf("..", dots+2);
+        if (endEnd<0 || endEnd>rangeEnd) endEnd = rangeEnd;
+        targetEnd = Integer.parseInt(target.substring(dots+2, endEnd));
+        // check for ' ' as well as '+' since SyntenyGFF3Record decodes a plus to a space
+        String name = gff.getName();
+        if (name!=null && name.length()>0) {
+            char endChar = name.charAt(name.length()-1);
+            if (endChar==' ' || endChar=='+') {
+                targetStrand = "1";
+            } else if (endChar=='-') {
+                targetStrand = "-1";
+            }
+        }
+    }
+
+    /**
+     * @return the source chromosome primary identifier
+     */
+    public String getSourceChromosome() {
+        return sourceChromosome;
+    }
+
+    /**
+     * @return the source start
+     */
+    public int getSourceStart() {
+        return sourceStart;
+    }
+
+    /**
+     * @return the source end
+     */
+    public int getSourceEnd() {
+        return sourceEnd;
+    }
+
+    /**
+     * @return the IM-format source strand, "1", "-1" or null
+     */
+    public String getSourceStrand() {
+        return sourceStrand;
+    }
+
+    /**
+     * @return the target chromosome primary identifier
+     */
+    public String getTargetChromosome() {
+        return targetChromosome;
+    }
+
+    /**
+     * @return the target start
+     */
+    public int getTargetStart() {
+        return targetStart;
+    }
+
+    /**
+     * @return the target end
+     */
+    public int getTargetEnd() {
+        return targetEnd;
+    }
+
+    /**
+     * @return the IM-format target strand, "1", "-1" or null
+     */
+    public String getTargetStrand() {
+        return targetStrand;
+    }
+
+    /**
+     * @return the record score, or null
+     */
+    public Double getScore() {
+        return score;
+    }
+
+    /**
+     * @return the DAGchainer median_Ks attribute, or null
+     */
+    public String getMedianKs() {
+        return medianKs;
+    }
+
+    /**
+     * @return the source syntenic region primary identifier; same as GBrowse standard
+     */
+    public String getSourceRegionName() {
+        return sourceChromosome+":"+sourceStart+SyntenyFileConverter.RANGE_SEPARATOR+sourceEnd;
+    }
+
+    /**
+     * @return the target syntenic region primary identifier; same as GBrowse standard
+     */
+    public String getTargetRegionName() {
+        return targetChromosome+":"+targetStart+SyntenyFileConverter.RANGE_SEPARATOR+targetEnd;
+    }
+
+}
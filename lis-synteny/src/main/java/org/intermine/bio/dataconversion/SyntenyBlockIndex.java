@@ -0,0 +1,140 @@
+package org.intermine.bio.dataconversion;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records the source and target regions of each stored synteny block so that a block that has already been stored,
+ * or its reciprocal from the other genome's file, can be skipped.
+ *
+ * A region is an interned chromosome index plus its start and end packed into a long, and the map from source region
+ * to target region is an open-addressing hash table in parallel primitive arrays, so a block costs a few tens of bytes
+ * and no Strings are built to check it. As with the Map of region names it replaces, adding a block with an existing
+ * source region replaces that region's target.
+ *
+ * @author Sam Hokin
+ */
+public class SyntenyBlockIndex {
+
+    static final int INITIAL_CAPACITY = 1024; // must be a power of 2
+    static final int EMPTY = -1;
+
+    Map<String,Integer> chromosomeIndexes = new HashMap<>();
+
+    int[] keyChromosomes;
+    long[] keyIntervals;
+    int[] valueChromosomes;
+    long[] valueIntervals;
+    int size = 0;
+
+    /**
+     * Create an empty index.
+     */
+    public SyntenyBlockIndex() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @return the interned index of the given chromosome primary identifier
+     */
+    public int getChromosomeIndex(String chromosome) {
+        Integer index = chromosomeIndexes.get(chromosome);
+        if (index==null) {
+            index = chromosomeIndexes.size();
+            chromosomeIndexes.put(chromosome, index);
+        }
+        return index;
+    }
+
+    /**
+     * Return true if a block with the given source and target regions, or its reciprocal, has already been added.
+     */
+    public boolean contains(int sourceChromosome, int sourceStart, int sourceEnd, int targetChromosome, int targetStart, int targetEnd) {
+        long sourceInterval = pack(sourceStart, sourceEnd);
+        long targetInterval = pack(targetStart, targetEnd);
+        int slot = find(sourceChromosome, sourceInterval);
+        if (keyChromosomes[slot]!=EMPTY && valueChromosomes[slot]==targetChromosome && valueIntervals[slot]==targetInterval) {
+            return true;
+        }
+        slot = find(targetChromosome, targetInterval);
+        return keyChromosomes[slot]!=EMPTY && valueChromosomes[slot]==sourceChromosome && valueIntervals[slot]==sourceInterval;
+    }
+
+    /**
+     * Add a block, replacing the target of an existing block with the same source region.
+     */
+    public void put(int sourceChromosome, int sourceStart, int sourceEnd, int targetChromosome, int targetStart, int targetEnd) {
+        long sourceInterval = pack(sourceStart, sourceEnd);
+        int slot = find(sourceChromosome, sourceInterval);
+        if (keyChromosomes[slot]==EMPTY) {
+            keyChromosomes[slot] = sourceChromosome;
+            keyIntervals[slot] = sourceInterval;
+            size++;
+        }
+        valueChromosomes[slot] = targetChromosome;
+        valueIntervals[slot] = pack(targetStart, targetEnd);
+        if (2*size>keyChromosomes.length) {
+            resize();
+        }
+    }
+
+    /**
+     * @return the number of source regions in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Pack start and end into a single long.
+     */
+    static long pack(int start, int end) {
+        return ((long) start << 32) | (end & 0xffffffffL);
+    }
+
+    /**
+     * Return the slot holding the given region, or the empty slot where it would go.
+     */
+    int find(int chromosome, long interval) {
+        int mask = keyChromosomes.length - 1;
+        int slot = hash(chromosome, interval) & mask;
+        while (keyChromosomes[slot]!=EMPTY && (keyChromosomes[slot]!=chromosome || keyIntervals[slot]!=interval)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    static int hash(int chromosome, long interval) {
+        long h = interval * 0x9E3779B97F4A7C15L + chromosome;
+        h ^= (h >>> 32);
+        h *= 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 29));
+    }
+
+    void allocate(int capacity) {
+        keyChromosomes = new int[capacity];
+        keyIntervals = new long[capacity];
+        valueChromosomes = new int[capacity];
+        valueIntervals = new long[capacity];
+        Arrays.fill(keyChromosomes, EMPTY);
+    }
+
+    void resize() {
+        int[] oldKeyChromosomes = keyChromosomes;
+        long[] oldKeyIntervals = keyIntervals;
+        int[] oldValueChromosomes = valueChromosomes;
+        long[] oldValueIntervals = valueIntervals;
+        allocate(2*oldKeyChromosomes.length);
+        for (int i=0; i<oldKeyChromosomes.length; i++) {
+            if (oldKeyChromosomes[i]!=EMPTY) {
+                int slot = find(oldKeyChromosomes[i], oldKeyIntervals[i]);
+                keyChromosomes[slot] = oldKeyChromosomes[i];
+                keyIntervals[slot] = oldKeyIntervals[i];
+                valueChromosomes[slot] = oldValueChromosomes[i];
+                valueIntervals[slot] = oldValueIntervals[i];
+            }
+        }
+    }
+
+}
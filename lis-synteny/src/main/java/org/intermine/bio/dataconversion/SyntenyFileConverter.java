@@ -1,13 +1,21 @@
 package org.intermine.bio.dataconversion;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 
@@ -29,6 +37,10 @@ import org.ncgr.zip.GZIPBufferedReader;
  *
  * Source and target strains are given by the file name, for example: glyma.Wm82.gnm2.x.aradu.V14167.gnm1.gff
  *
+ * With threads>1 the GFF files are read and parsed on a pool of worker threads while the framework moves on to the
+ * next file; the Items are built from the parsed records on the converter thread in file order, so the result is
+ * the same as for a serial load.
+ *
  * @author Sam Hokin
  */
 public class SyntenyFileConverter extends DatastoreFileConverter {
@@ -49,11 +61,26 @@ public class SyntenyFileConverter extends DatastoreFileConverter {
     Map<String,Item> chromosomeMap = new HashMap<>(); // keyed by primaryIdentifier
 
     // keep to only one source/target pair
-    Map<String,String> syntenyBlockIds = new HashMap<>();
+    SyntenyBlockIndex syntenyBlockIndex = new SyntenyBlockIndex();
 
     // validate the collection first by storing a flag
     boolean collectionValidated = false;
 
+    // number of worker threads parsing GFF files; 1 parses them serially; can be set in project.xml
+    int threads = 1;
+    ExecutorService executor;
+    Deque<SyntenyFile> pendingFiles = new ArrayDeque<>();
+
+    /**
+     * A synteny GFF file's genomes, taken from the file name, and its parsed syntenic_region records.
+     */
+    static class SyntenyFile {
+        String name;
+        Item sourceOrganism, sourceStrain, targetOrganism, targetStrain;
+        String sourceAssy, targetAssy;
+        Future<List<SyntenicPair>> pairs;
+    }
+
     /**
      * Create a new SyntenyFileConverter
      * @param writer the ItemWriter to write out new items
@@ -63,6 +90,16 @@ public class SyntenyFileConverter extends DatastoreFileConverter {
         super(writer, model);
     }
 
+    /**
+     * threads can be set in project.xml to parse the GFF files on a pool of worker threads
+     */
+    public void setThreads(String threads) {
+        this.threads = Integer.parseInt(threads);
+        if (this.threads<1) {
+            throw new RuntimeException("threads must be at least 1.");
+        }
+    }
+
     /**
      * {@inheritDoc}
      * Process each GFF file by creating SyntenyBlock and SyntenicRegion items.
@@ -96,6 +133,14 @@ public class SyntenyFileConverter extends DatastoreFileConverter {
      */
     @Override
     public void close() throws ObjectStoreException {
+        // build the Items from any files still being parsed
+        try {
+            while (pendingFiles.size()>0) {
+                buildSyntenyBlocks(pendingFiles.remove());
+            }
+        } finally {
+            if (executor!=null) executor.shutdownNow();
+        }
         // add publication to Annotatables
         if (publication!=null) {
             for (Item sourceRegion : sourceRegions) {
@@ -120,6 +165,9 @@ public class SyntenyFileConverter extends DatastoreFileConverter {
      * Process a synteny GFF file. The filename must have 9 dot-separated parts as follows:
      * 0     1           2    3 4     5    6    7    8    9
      * cicar.CDCFrontier.gnm1.x.lotja.MG20.gnm3.7Bqh.gff3.gz
+     *
+     * With threads>1 the file is parsed on a worker thread, and the Items for files whose parsing has finished are
+     * built in file order, keeping at most 2*threads files in flight.
      */
     public void processGFF() throws IOException {
         System.out.println("## Processing "+getCurrentFile().getName());
@@ -138,222 +186,187 @@ public class SyntenyFileConverter extends DatastoreFileConverter {
         String targetStrainId = fileNameParts[5];
         String targetAssy = fileNameParts[6];
         // get the organisms and strains
-        Item sourceOrganism = getOrganism(sourceGensp);
-        Item sourceStrain = getStrain(sourceStrainId, sourceOrganism);
-        Item targetOrganism = getOrganism(targetGensp);
-        Item targetStrain = getStrain(targetStrainId, targetOrganism);
-        // -------------------------------------------------------------------------------------------------------
-        // Load the GFF data into a map. Adds new chromosomes to chromosomeMap, keyed by primaryIdentifier.
-        // -------------------------------------------------------------------------------------------------------
-        // now read in the gzipped GFF3 file 
-        BufferedReader gffReader = GZIPBufferedReader.getReader(getCurrentFile());
-        String line = null;
-        while ((line=gffReader.readLine())!=null) {
-            // comment
-            if (line.startsWith("#") || line.trim().length()==0) continue;
-            // load the GFF line
-            SyntenyGFF3Record gff = new SyntenyGFF3Record(line);
-            if (gff.getType().equals("syntenic_region")) {
-                String sourceChrName = getSourceChromosomeName(gff);
-                String targetChrName = getTargetChromosomeName(gff);
-                if (targetChrName==null) {
-                    throw new RuntimeException("GFF syntenic_region record is missing target attribute:"+line);
+        SyntenyFile syntenyFile = new SyntenyFile();
+        syntenyFile.name = getCurrentFile().getName();
+        syntenyFile.sourceOrganism = getOrganism(sourceGensp);
+        syntenyFile.sourceStrain = getStrain(sourceStrainId, syntenyFile.sourceOrganism);
+        syntenyFile.sourceAssy = sourceAssy;
+        syntenyFile.targetOrganism = getOrganism(targetGensp);
+        syntenyFile.targetStrain = getStrain(targetStrainId, syntenyFile.targetOrganism);
+        syntenyFile.targetAssy = targetAssy;
+        final File file = getCurrentFile();
+        if (threads==1) {
+            List<SyntenicPair> pairs = parseGFF(file);
+            syntenyFile.pairs = CompletableFuture.completedFuture(pairs);
+            buildSyntenyBlocks(syntenyFile);
+        } else {
+            if (executor==null) {
+                // daemon workers, so that a load which fails before close() can't be kept alive by the pool
+                executor = Executors.newFixedThreadPool(threads, runnable -> {
+                        Thread thread = new Thread(runnable, "synteny-gff-parser");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            }
+            try {
+                syntenyFile.pairs = executor.submit(() -> parseGFF(file));
+                pendingFiles.add(syntenyFile);
+                // build the oldest files once they're parsed, or when too many are in flight
+                while (pendingFiles.size()>0 && (pendingFiles.peek().pairs.isDone() || pendingFiles.size()>=2*threads)) {
+                    buildSyntenyBlocks(pendingFiles.remove());
                 }
-                // ignore this record if source or target are not on a chromosome
-                if (!isChromosome(sourceChrName)) continue;
-                if (!isChromosome(targetChrName)) continue;
-                // get the source and target chromosomes
-                Item sourceChromosome = getChromosome(sourceChrName, sourceOrganism, sourceStrain);
-                Item targetChromosome = getChromosome(targetChrName, targetOrganism, targetStrain);
-                // populate the source region and its location
-                Item sourceRegion = createItem("SyntenicRegion");
-                sourceRegion.setAttribute("assemblyVersion", sourceAssy);
-                Item sourceChromosomeLocation = createItem("Location");
-                populateSourceRegion(sourceRegion, gff, sourceOrganism, sourceStrain, sourceChromosome, sourceChromosomeLocation);
-                String sourceIdentifier = getSourceRegionName(gff);
-                // populate the target region and its location
-                Item targetRegion = createItem("SyntenicRegion");
-                targetRegion.setAttribute("assemblyVersion", targetAssy);
-                Item targetChromosomeLocation = createItem("Location");
-                populateTargetRegion(targetRegion, gff, targetOrganism, targetStrain, targetChromosome, targetChromosomeLocation);
-                String targetIdentifier = getTargetRegionName(gff);
-                // only continue if we haven't stored a synteny block with these regions
-                if (syntenyBlockIds.containsKey(sourceIdentifier) && syntenyBlockIds.get(sourceIdentifier).equals(targetIdentifier) ||
-                    syntenyBlockIds.containsKey(targetIdentifier) && syntenyBlockIds.get(targetIdentifier).equals(sourceIdentifier)) {
-                    // do nothing
-                } else {
-                    // store the regions in the map for future non-duplication
-                    syntenyBlockIds.put(sourceIdentifier, targetIdentifier);
-                    // get the medianKs value for this block
-                    Map<String, List<String>> attributes = gff.getAttributes();
-                    String medianKs = attributes.get("median_Ks").get(0);
-                    // associate the two regions with this synteny block
-                    Item syntenyBlock = createItem("SyntenyBlock");
-                    syntenyBlock.setAttribute("medianKs", medianKs);
-                    syntenyBlock.addToCollection("syntenicRegions", sourceRegion);
-                    syntenyBlock.addToCollection("syntenicRegions", targetRegion);
-                    syntenyBlocks.add(syntenyBlock);
-                    // associate the block with the regions and store them
-                    sourceRegion.setReference("syntenyBlock", syntenyBlock);
-                    sourceRegions.add(sourceRegion);
-                    sourceChromosomeLocations.add(sourceChromosomeLocation);
-                    targetRegion.setReference("syntenyBlock", syntenyBlock);
-                    targetRegions.add(targetRegion);
-                    targetChromosomeLocations.add(targetChromosomeLocation);
+            } catch (RuntimeException ex) {
+                // the load is over, so stop parsing the remaining files
+                executor.shutdownNow();
+                pendingFiles.clear();
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Read and parse the syntenic_region records from a gzipped synteny GFF file. Creates no Items, so it may be run on a worker thread.
+     */
+    static List<SyntenicPair> parseGFF(File file) throws IOException {
+        List<SyntenicPair> pairs = new ArrayList<>();
+        BufferedReader gffReader = GZIPBufferedReader.getReader(file);
+        try {
+            String line = null;
+            while ((line=gffReader.readLine())!=null) {
+                // comment
+                if (line.startsWith("#") || line.trim().length()==0) continue;
+                // load the GFF line
+                SyntenyGFF3Record gff = new SyntenyGFF3Record(line);
+                if (gff.getType().equals("syntenic_region")) {
+                    // parse the source and target regions once
+                    pairs.add(new SyntenicPair(gff));
                 }
             }
+        } finally {
+            gffReader.close();
+        }
+        return pairs;
+    }
+
+    /**
+     * Build the SyntenyBlock, SyntenicRegion and Location Items for a parsed synteny file.
+     * Adds new chromosomes to chromosomeMap, keyed by primaryIdentifier.
+     */
+    void buildSyntenyBlocks(SyntenyFile syntenyFile) {
+        List<SyntenicPair> pairs;
+        try {
+            pairs = syntenyFile.pairs.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException("Error parsing "+syntenyFile.name, ex.getCause());
+        }
+        for (SyntenicPair pair : pairs) {
+            // ignore this record if source or target are not on a chromosome
+            if (!isChromosome(pair.getSourceChromosome())) continue;
+            if (!isChromosome(pair.getTargetChromosome())) continue;
+            String sourceIdentifier = pair.getSourceRegionName();
+            String targetIdentifier = pair.getTargetRegionName();
+            // get the source and target chromosomes
+            Item sourceChromosome = getChromosome(pair.getSourceChromosome(), syntenyFile.sourceOrganism, syntenyFile.sourceStrain);
+            Item targetChromosome = getChromosome(pair.getTargetChromosome(), syntenyFile.targetOrganism, syntenyFile.targetStrain);
+            // populate the source region and its location
+            Item sourceRegion = createItem("SyntenicRegion");
+            sourceRegion.setAttribute("assemblyVersion", syntenyFile.sourceAssy);
+            Item sourceChromosomeLocation = createItem("Location");
+            populateSourceRegion(sourceRegion, pair, sourceIdentifier, syntenyFile.sourceOrganism, syntenyFile.sourceStrain, sourceChromosome, sourceChromosomeLocation);
+            // populate the target region and its location
+            Item targetRegion = createItem("SyntenicRegion");
+            targetRegion.setAttribute("assemblyVersion", syntenyFile.targetAssy);
+            Item targetChromosomeLocation = createItem("Location");
+            populateTargetRegion(targetRegion, pair, targetIdentifier, syntenyFile.targetOrganism, syntenyFile.targetStrain, targetChromosome, targetChromosomeLocation);
+            // only continue if we haven't stored a synteny block with these regions
+            int sourceChromosomeIndex = syntenyBlockIndex.getChromosomeIndex(pair.getSourceChromosome());
+            int targetChromosomeIndex = syntenyBlockIndex.getChromosomeIndex(pair.getTargetChromosome());
+            if (syntenyBlockIndex.contains(sourceChromosomeIndex, pair.getSourceStart(), pair.getSourceEnd(),
+                                           targetChromosomeIndex, pair.getTargetStart(), pair.getTargetEnd())) {
+                // do nothing
+            } else {
+                // store the regions in the index for future non-duplication
+                syntenyBlockIndex.put(sourceChromosomeIndex, pair.getSourceStart(), pair.getSourceEnd(),
+                                      targetChromosomeIndex, pair.getTargetStart(), pair.getTargetEnd());
+                // associate the two regions with this synteny block
+                Item syntenyBlock = createItem("SyntenyBlock");
+                syntenyBlock.setAttribute("medianKs", pair.getMedianKs());
+                syntenyBlock.addToCollection("syntenicRegions", sourceRegion);
+                syntenyBlock.addToCollection("syntenicRegions", targetRegion);
+                syntenyBlocks.add(syntenyBlock);
+                // associate the block with the regions and store them
+                sourceRegion.setReference("syntenyBlock", syntenyBlock);
+                sourceRegions.add(sourceRegion);
+                sourceChromosomeLocations.add(sourceChromosomeLocation);
+                targetRegion.setReference("syntenyBlock", syntenyBlock);
+                targetRegions.add(targetRegion);
+                targetChromosomeLocations.add(targetChromosomeLocation);
+            }
         }
-        gffReader.close();
     }
     
     /**
-     * Populate the attributes of a source SyntenicRegion with a SyntenyGFF3Record's data.
+     * Populate the attributes of a source SyntenicRegion from a SyntenicPair.
      *
      * @param syntenicRegion the SyntenicRegion Item
-     * @param gff the SyntenyGFF3Record holding the data
+     * @param pair the SyntenicPair parsed from the GFF record
+     * @param regionName the source region primary identifier
      * @param chromosome the source Chromosome Item
      * @param chromosomeLocation the source Location Item to be filled in
      */
-    void populateSourceRegion(Item syntenicRegion, SyntenyGFF3Record gff, Item organism, Item strain, Item chromosome, Item chromosomeLocation) {
-	syntenicRegion.setAttribute("primaryIdentifier", getSourceRegionName(gff));
-	syntenicRegion.setAttribute("secondaryIdentifier", DatastoreUtils.extractSecondaryIdentifier(getSourceRegionName(gff), false));
-	syntenicRegion.setAttribute("name", DatastoreUtils.extractSecondaryIdentifier(getSourceRegionName(gff), false));
-	syntenicRegion.setAttribute("length", String.valueOf(getSourceEnd(gff)-getSourceStart(gff)+1));
-	syntenicRegion.setAttribute("score", String.valueOf(gff.getScore()));
+    void populateSourceRegion(Item syntenicRegion, SyntenicPair pair, String regionName, Item organism, Item strain, Item chromosome, Item chromosomeLocation) {
+	String secondaryIdentifier = new LisIdentifier(regionName).getSecondaryIdentifier(false);
+	syntenicRegion.setAttribute("primaryIdentifier", regionName);
+	syntenicRegion.setAttribute("secondaryIdentifier", secondaryIdentifier);
+	syntenicRegion.setAttribute("name", secondaryIdentifier);
+	syntenicRegion.setAttribute("length", String.valueOf(pair.getSourceEnd()-pair.getSourceStart()+1));
+	syntenicRegion.setAttribute("score", String.valueOf(pair.getScore()));
 	syntenicRegion.setReference("organism", organism);
 	syntenicRegion.setReference("strain", strain);
 	syntenicRegion.setReference("chromosome", chromosome);
 	syntenicRegion.setReference("chromosomeLocation", chromosomeLocation);
-	chromosomeLocation.setAttribute("start", String.valueOf(getSourceStart(gff)));
-	chromosomeLocation.setAttribute("end", String.valueOf(getSourceEnd(gff)));
-	chromosomeLocation.setAttribute("strand", gff.getStrand());
+	chromosomeLocation.setAttribute("start", String.valueOf(pair.getSourceStart()));
+	chromosomeLocation.setAttribute("end", String.valueOf(pair.getSourceEnd()));
+	chromosomeLocation.setAttribute("strand", pair.getSourceStrand());
 	chromosomeLocation.setReference("feature", syntenicRegion);
 	chromosomeLocation.setReference("locatedOn", chromosome);
     }
 
     /**
-     * Populate the attributes of a target SyntenicRegion with a SyntenyGFF3Record's DAGchainer attributes data; Organism, Chromosome and ChromosomeLocation Items must be passed in as well.
+     * Populate the attributes of a target SyntenicRegion from a SyntenicPair; Organism, Chromosome and ChromosomeLocation Items must be passed in as well.
      *
      * @param syntenicRegion the SyntenicRegion Item
-     * @param gff the SyntenyGFF3Record holding the data
+     * @param pair the SyntenicPair parsed from the GFF record
+     * @param regionName the target region primary identifier
      * @param chromosome the target Chromosome Item
      * @param chromosomeLocation the target Location Item to be filled in
      */
-    void populateTargetRegion(Item syntenicRegion, SyntenyGFF3Record gff, Item organism, Item strain, Item chromosome, Item chromosomeLocation) {
-	syntenicRegion.setAttribute("primaryIdentifier", getTargetRegionName(gff));
-	syntenicRegion.setAttribute("secondaryIdentifier", DatastoreUtils.extractSecondaryIdentifier(getTargetRegionName(gff), false));
-	syntenicRegion.setAttribute("name", DatastoreUtils.extractSecondaryIdentifier(getTargetRegionName(gff), false));
-	syntenicRegion.setAttribute("length", String.valueOf(getTargetEnd(gff)-getTargetStart(gff)+1));
-	syntenicRegion.setAttribute("score", String.valueOf(gff.getScore()));
+    void populateTargetRegion(Item syntenicRegion, SyntenicPair pair, String regionName, Item organism, Item strain, Item chromosome, Item chromosomeLocation) {
+	String secondaryIdentifier = new LisIdentifier(regionName).getSecondaryIdentifier(false);
+	syntenicRegion.setAttribute("primaryIdentifier", regionName);
+	syntenicRegion.setAttribute("secondaryIdentifier", secondaryIdentifier);
+	syntenicRegion.setAttribute("name", secondaryIdentifier);
+	syntenicRegion.setAttribute("length", String.valueOf(pair.getTargetEnd()-pair.getTargetStart()+1));
+	syntenicRegion.setAttribute("score", String.valueOf(pair.getScore()));
 	syntenicRegion.setReference("organism", organism);
 	syntenicRegion.setReference("strain", strain);
 	syntenicRegion.setReference("chromosome", chromosome);
 	syntenicRegion.setReference("chromosomeLocation", chromosomeLocation);
-	chromosomeLocation.setAttribute("start", String.valueOf(getTargetStart(gff)));
-	chromosomeLocation.setAttribute("end", String.valueOf(getTargetEnd(gff)));
-	if (getTargetStrand(gff)!=null) chromosomeLocation.setAttribute("strand", getTargetStrand(gff));
+	chromosomeLocation.setAttribute("start", String.valueOf(pair.getTargetStart()));
+	chromosomeLocation.setAttribute("end", String.valueOf(pair.getTargetEnd()));
+	if (pair.getTargetStrand()!=null) chromosomeLocation.setAttribute("strand", pair.getTargetStrand());
 	chromosomeLocation.setReference("feature", syntenicRegion);
 	chromosomeLocation.setReference("locatedOn", chromosome);
     }
 
-    /**
-     * Return the IM-format target strand from a DAGchainer Name attribute, checking for ' ' instead of '+' since SyntenyGFF3Record converts a plus to space.
-     */
-    String getTargetStrand(SyntenyGFF3Record gff) {
-	String name = gff.getNames().get(0);
-	char endChar = name.charAt(name.length()-1);
-	if (endChar==' ' || endChar=='+') {
-	    return "1";
-	} else if (endChar=='-') {
-	    return "-1";
-	} else {
-	    return null;
-	}
-    }
-
-    /**
-     * Return the source chromosome nanme - opportunity for tweaks here
-     */
-    String getSourceChromosomeName(SyntenyGFF3Record gff) {
-	return gff.getSequenceID();
-    }
-
-    /**
-     * Return the DAGchainer target chromosome from a DAGchainer SyntenyGFF3Record
-     * Target=Araip.B01:17125379..17229197
-     */
-    String getTargetChromosomeName(SyntenyGFF3Record gff) {
-        String target = gff.getTarget();
-        if (target==null) {
-            System.err.println("GFF file has null target in the following record, so aborting:");
-            System.err.println(gff.toString());
-            System.exit(1);
-        }
-        String[] chunks = gff.getTarget().split(":");
-        return chunks[0];
-    }
-    
-    /**
-     * Return the source sequence start from a GFF3 record - just echoes SyntenyGFF3Record.getStart() for clarity
-     */
-    int getSourceStart(SyntenyGFF3Record gff) {
-	return gff.getStart();
-    }
-
-    /**
-     * Return the source sequence end from a GFF3 record - just echoes SyntenyGFF3Record.getEnd() for clarity
-     */
-    int getSourceEnd(SyntenyGFF3Record gff) {
-	return gff.getEnd();
-    }
-
-    
-    /**
-     * Return the target sequence start from a DAGchainer SyntenyGFF3Record
-     * Target=Araip.B01:17125379..17229197
-     */
-    int getTargetStart(SyntenyGFF3Record gff) {
-	String[] chunks = gff.getTarget().split(":");
-	String range = chunks[1];
-	String[] pieces = range.split("\\.\\.");
-	return Integer.parseInt(pieces[0]);
-    }
-
-    /**
-     * Return the target sequence end from a DAGchainer SyntenyGFF3Record
-     */
-    int getTargetEnd(SyntenyGFF3Record gff) {
-	String[] chunks = gff.getTarget().split(":");
-	String range = chunks[1];
-	String[] pieces = range.split("\\.\\.");
-	return Integer.parseInt(pieces[1]);
-    }
-
-    /**
-     * Return a source syntenic region primary identifier from a GFF record; same as GBrowse standard
-     */
-    String getSourceRegionName(SyntenyGFF3Record gff) {
-	String sourceChrName = getSourceChromosomeName(gff);
-	int sourceStart = getSourceStart(gff);
-	int sourceEnd = getSourceEnd(gff);
-	return sourceChrName+":"+sourceStart+RANGE_SEPARATOR+sourceEnd;
-    }
-
-    /**
-     * Return a target syntenic region primary identifier from a GFF record; same as GBrowse standard
-     */
-    String getTargetRegionName(SyntenyGFF3Record gff) {
-	String targetChrName = getTargetChromosomeName(gff);
-	int targetStart = getTargetStart(gff);
-	int targetEnd = getTargetEnd(gff);
-	return targetChrName+":"+targetStart+RANGE_SEPARATOR+targetEnd;
-    }
-
     /**
      * Return a synteny block primary identifier formed from the source and target names with a separator
      */
-    String getSyntenyBlockName(SyntenyGFF3Record gff) {
-	return getSourceRegionName(gff)+REGION_SEPARATOR+getTargetRegionName(gff);
+    String getSyntenyBlockName(SyntenicPair pair) {
+	return pair.getSourceRegionName()+REGION_SEPARATOR+pair.getTargetRegionName();
     }
 
     /**
@@ -363,11 +376,12 @@ public class SyntenyFileConverter extends DatastoreFileConverter {
 	if (chromosomeMap.containsKey(primaryIdentifier)) {
 	    return chromosomeMap.get(primaryIdentifier);
 	} else {
-	    String secondaryIdentifier = DatastoreUtils.extractSecondaryIdentifier(primaryIdentifier, false);
+	    LisIdentifier lisIdentifier = new LisIdentifier(primaryIdentifier);
+	    String secondaryIdentifier = lisIdentifier.getSecondaryIdentifier(false);
 	    if (secondaryIdentifier==null) {
 		throw new RuntimeException("Error in chromosome primaryIdentifier:"+primaryIdentifier);
 	    }
-            String assemblyVersion = DatastoreUtils.extractAssemblyVersionFromFeature(primaryIdentifier);
+            String assemblyVersion = lisIdentifier.getAssemblyVersion();
             if (assemblyVersion==null) {
                 throw new RuntimeException("Error in chromosome assemblyVersion:"+primaryIdentifier);
             }
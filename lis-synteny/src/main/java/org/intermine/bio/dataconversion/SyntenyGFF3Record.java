@@ -31,6 +31,10 @@ import org.apache.commons.lang.StringUtils;
  *
  * Support for "matches=" has been added here for LIS synteny GFFs.
  *
+ * Lines are split with indexOf rather than a StringTokenizer, the sequence ID is only decoded if it contains an
+ * encoded character, and the attributes column is only parsed into a Map when getAttributes() or a List getter is
+ * called; single-valued getters scan the raw attributes column instead.
+ *
  * @author Kim Rutherford
  */
 
@@ -40,10 +44,13 @@ public class SyntenyGFF3Record {
     private String type;
     private int start;
     private int end;
-    private Double score;
+    private double score;
+    private boolean hasScore;
     private String strand;
     private String phase;
-    private Map<String, List<String>> attributes = new LinkedHashMap<String, List<String>>();
+    private String line;                               // kept for parse error messages
+    private String attributeString;                    // the raw attributes column, or null
+    private Map<String, List<String>> attributes;      // parsed from attributeString on demand
     private String header = null;
 
     /**
@@ -67,19 +74,29 @@ public class SyntenyGFF3Record {
     }
 
     private void parseLine(String line) throws IOException {
-        StringTokenizer st = new StringTokenizer(line, "\t", false);
-
-        if (st.countTokens() < 8) {
-            throw new IOException("GFF line too short (" + st.countTokens() + " fields): " + line);
+        this.line = line;
+        // split into at most nine non-empty tab-separated fields, skipping empty fields as StringTokenizer does
+        String[] fields = new String[9];
+        int count = 0;
+        int from = 0;
+        int length = line.length();
+        while (from<=length && count<9) {
+            int tab = line.indexOf('\t', from);
+            if (tab<0) tab = length;
+            if (tab>from) fields[count++] = line.substring(from, tab);
+            from = tab + 1;
+        }
+        if (count < 8) {
+            throw new IOException("GFF line too short (" + count + " fields): " + line);
         }
 
-        sequenceID = XmlUtil.fixEntityNames(URLDecoder.decode(st.nextToken(), "UTF-8")).trim();
-        source = st.nextToken().trim();
+        sequenceID = decode(fields[0]).trim();
+        source = fields[1].trim();
         if ("".equals(source) || ".".equals(source)) {
             source = null;
         }
-        type = st.nextToken().trim();
-        String startString = st.nextToken().trim();
+        type = fields[2].trim();
+        String startString = fields[3].trim();
         try {
             if (".".equals(startString)) {
                 start = -1;
@@ -91,7 +108,7 @@ public class SyntenyGFF3Record {
                     + " from line: " + line);
         }
 
-        String endString = st.nextToken().trim();
+        String endString = fields[4].trim();
         try {
             if (".".equals(endString)) {
                 end = -1;
@@ -103,35 +120,51 @@ public class SyntenyGFF3Record {
                     + " from line: " + line);
         }
 
-        String scoreString = st.nextToken().trim();
+        String scoreString = fields[5].trim();
 
         if ("".equals(scoreString) || ".".equals(scoreString)) {
-            score = null;
+            hasScore = false;
         } else {
             try {
-                score = new Double(scoreString);
+                score = Double.parseDouble(scoreString);
+                hasScore = true;
             } catch (NumberFormatException nfe) {
                 throw new IOException("can not parse score: " + scoreString + " from line: "
                         + line);
             }
         }
 
-        strand = st.nextToken().trim();
+        strand = fields[6].trim();
 
         if ("".equals(strand) || ".".equals(strand)) {
             strand = null;
         }
 
-        phase = st.nextToken().trim();
+        phase = fields[7].trim();
         if ("".equals(phase) || ".".equals(phase)) {
             phase = null;
         }
 
-        if (st.hasMoreTokens()) {
-            parseAttribute(st.nextToken(), line);
+        if (count > 8) {
+            attributeString = fields[8];
+        } else {
+            attributes = new LinkedHashMap<String, List<String>>();
         }
     }
 
+    /**
+     * URL-decode and fix entity names in a value, only if it contains a character that would be changed.
+     */
+    private static String decode(String value) throws IOException {
+        if (value.indexOf('%') >= 0 || value.indexOf('+') >= 0) {
+            value = URLDecoder.decode(value, "UTF-8");
+        }
+        if (value.indexOf('&') >= 0) {
+            value = XmlUtil.fixEntityNames(value);
+        }
+        return value;
+    }
+
     /**
      * Create a new SyntenyGFF3Record
      * @param sequenceID the sequence name
@@ -152,7 +185,10 @@ public class SyntenyGFF3Record {
         this.type = type.trim();
         this.start = start;
         this.end = end;
-        this.score = score;
+        if (score != null) {
+            this.score = score.doubleValue();
+            this.hasScore = true;
+        }
         if (strand != null) {
             this.strand = strand.trim();
         }
@@ -163,6 +199,7 @@ public class SyntenyGFF3Record {
     }
 
     private void parseAttribute(String argAttributeString, String line) throws IOException {
+        attributes = new LinkedHashMap<String, List<String>>();
         String attributeString = argAttributeString;
         attributeString = StringUtils.replaceEach(attributeString,
                 new String[] {"&amp;", "&quot;", "&lt;", "&gt;"},
@@ -280,6 +317,22 @@ public class SyntenyGFF3Record {
      * @return the score field of this record
      */
     public Double getScore () {
+        return hasScore ? Double.valueOf(score) : null;
+    }
+
+    /**
+     * Return true if this record has a score.
+     * @return true if the score field is not empty or "."
+     */
+    public boolean hasScore () {
+        return hasScore;
+    }
+
+    /**
+     * Return the score field of this record as a primitive, without boxing.
+     * @return the score, or 0.0 if there is no score
+     */
+    public double getScoreValue () {
         return score;
     }
 
@@ -314,10 +367,7 @@ public class SyntenyGFF3Record {
      * @return the Id from the attributes of this record or null of there isn't a value
      */
     public String getId () {
-        if (getAttributes().containsKey("ID")) {
-            return getAttributes().get("ID").get(0);
-        }
-        return null;
+        return getAttribute("ID");
     }
 
     /**
@@ -325,7 +375,15 @@ public class SyntenyGFF3Record {
      * @param id the new id
      */
     public void setId(String id) {
-        attributes.put("ID", Collections.singletonList(id));
+        getAttributes().put("ID", Collections.singletonList(id));
+    }
+
+    /**
+     * Return the first value of the Name field from the attributes of this record.
+     * @return the first Name from the attributes of this record or null of there isn't a value
+     */
+    public String getName() {
+        return getAttribute("Name");
     }
 
     /**
@@ -344,10 +402,7 @@ public class SyntenyGFF3Record {
      * @return the Alias from the attributes of this record or null of there isn't a value
      */
     public String getFirstAlias () {
-        if (getAttributes().containsKey("Alias")) {
-            return getAttributes().get("Alias").get(0);
-        }
-        return null;
+        return getAttribute("Alias");
     }
 
     /**
@@ -377,12 +432,11 @@ public class SyntenyGFF3Record {
      * @return the Target from the attributes of this record or null of there isn't a value
      */
     public String getTarget() {
-        if (getAttributes().containsKey("Target")) {
-            return getAttributes().get("Target").get(0);
-        } else if (getAttributes().containsKey("matches")) {
-            return getAttributes().get("matches").get(0);
+        String target = getAttribute("Target");
+        if (target != null) {
+            return target;
         }
-        return null;
+        return getAttribute("matches");
     }
 
     /**
@@ -390,10 +444,7 @@ public class SyntenyGFF3Record {
      * @return the matches from the attributes of this record or null of there isn't a value
      */
     public String getMatches() {
-        if (getAttributes().containsKey("matches")) {
-            return getAttributes().get("matches").get(0);
-        }
-        return null;
+        return getAttribute("matches");
     }
 
     /**
@@ -401,10 +452,7 @@ public class SyntenyGFF3Record {
      * @return the Gap from the attributes of this record or null of there isn't a value
      */
     public String getGap() {
-        if (getAttributes().containsKey("Gap")) {
-            return getAttributes().get("Gap").get(0);
-        }
-        return null;
+        return getAttribute("Gap");
     }
 
     /**
@@ -412,10 +460,7 @@ public class SyntenyGFF3Record {
      * @return the Note from the attributes of this record or null of there isn't a value
      */
     public String getNote() {
-        if (getAttributes().containsKey("Note")) {
-            return getAttributes().get("Note").get(0);
-        }
-        return null;
+        return getAttribute("Note");
     }
 
     /**
@@ -434,10 +479,7 @@ public class SyntenyGFF3Record {
      * @return the OntologyTerm from the attributes of this record or null of there isn't a value
      */
     public String getOntologyTerm () {
-        if (getAttributes().containsKey("Ontology_term")) {
-            return getAttributes().get("Ontology_term").get(0);
-        }
-        return null;
+        return getAttribute("Ontology_term");
     }
 
     /**
@@ -446,9 +488,71 @@ public class SyntenyGFF3Record {
      * @return the attributes of this record
      */
     public Map<String, List<String>> getAttributes () {
+        if (attributes == null) {
+            try {
+                parseAttribute(attributeString, line);
+            } catch (IOException e) {
+                throw new RuntimeException(e.getMessage(), e);
+            }
+        }
         return attributes;
     }
 
+    /**
+     * Return the first value of the given attribute, the same as getAttributes().get(name).get(0), but without
+     * building the attributes Map if the column has no quoted values or entities. As with the Map, the last
+     * occurrence of a repeated attribute wins.
+     *
+     * @param name the attribute name
+     * @return the first value of the attribute, or null if it isn't present
+     */
+    public String getAttribute(String name) {
+        if (attributes == null && attributeString.indexOf('"') < 0 && attributeString.indexOf('&') < 0) {
+            String value = null;
+            int length = attributeString.length();
+            int from = 0;
+            while (from < length) {
+                int semicolon = attributeString.indexOf(';', from);
+                if (semicolon < 0) semicolon = length;
+                String attVal = attributeString.substring(from, semicolon).trim();
+                from = semicolon + 1;
+                int equals = attVal.indexOf('=');
+                if (equals < 0) {
+                    if (attVal.length() == 0) continue;
+                    // malformed, let the full parser report it
+                    return getFirstValue(name);
+                }
+                if (equals != name.length() || !attVal.startsWith(name)) continue;
+                String values = attVal.substring(equals + 1).trim();
+                int comma = values.indexOf(',');
+                value = (comma < 0) ? values : values.substring(0, comma);
+                if (values.length() == 0) {
+                    // no values, let the full parser handle it
+                    return getFirstValue(name);
+                }
+            }
+            if (value == null || "Target".equals(name) || "Gap".equals(name)) {
+                return value;
+            }
+            try {
+                return decode(value);
+            } catch (IOException e) {
+                throw new RuntimeException(e.getMessage(), e);
+            }
+        }
+        return getFirstValue(name);
+    }
+
+    /**
+     * Return the first value of the given attribute from the attributes Map.
+     */
+    private String getFirstValue(String name) {
+        if (getAttributes().containsKey(name)) {
+            return getAttributes().get(name).get(0);
+        }
+        return null;
+    }
+
     /**
      * Return the value of the top of the GFF file, any line that starts with #.
      *
@@ -464,8 +568,8 @@ public class SyntenyGFF3Record {
     @Override
     public String toString() {
         return "<SyntenyGFF3Record: sequenceID: " + sequenceID + " source: " + source + " type: "
-            + type + " start: " + start + " end: " + end + " score: " + score + " strand: "
-            + strand + " phase: " + phase + " attributes: " + attributes + ">";
+            + type + " start: " + start + " end: " + end + " score: " + getScore() + " strand: "
+            + strand + " phase: " + phase + " attributes: " + getAttributes() + ">";
     }
 
     /**
@@ -477,7 +581,7 @@ public class SyntenyGFF3Record {
             return URLEncoder.encode(sequenceID, "UTF-8") + "\t"
                 + ((source == null) ? "." : source) + "\t"
                 + type + "\t" + start + "\t" + end + "\t"
-                + ((score == null) ? "." : score.toString()) + "\t"
+                + ((!hasScore) ? "." : getScore().toString()) + "\t"
                 + ((strand == null) ? "." : strand) + "\t"
                 + ((phase == null) ? "." : phase) + "\t"
                 + writeAttributes();
@@ -489,7 +593,7 @@ public class SyntenyGFF3Record {
     private String writeAttributes() {
         StringBuffer sb = new StringBuffer();
         boolean first = true;
-        for (Map.Entry<String, List<String>> entry: attributes.entrySet()) {
+        for (Map.Entry<String, List<String>> entry: getAttributes().entrySet()) {
             if (!first) {
                 sb.append(";");
             }